@@ -3,8 +3,8 @@
 -dontwarn ai.onnxruntime.**
 
 # Detection classes
--keep class com.animedetector.OptimizedAnimeDetector$Detection { *; }
--keep class com.animedetector.OptimizedAnimeDetector$DetectionResult { *; }
+-keep class com.animedetector.Detection { *; }
+-keep class com.animedetector.DetectionResult { *; }
 
 -optimizationpasses 5
 -dontusemixedcaseclassnames
@@ -0,0 +1,32 @@
+package com.animedetector;
+
+/**
+ * ✅ عدادات التخصيص وجمع القمامة الخاصة بالمنصة: Debug على الجهاز و ThreadMXBean على JVM سطح المكتب
+ */
+public interface AllocationCounters {
+    /**
+     * البايتات المخصصة على الخيط الحالي منذ بدء العد؛ قيمة سالبة = غير مدعوم
+     */
+    long threadAllocatedBytes();
+
+    long gcCount();
+
+    long gcTimeMillis();
+
+    AllocationCounters NONE = new AllocationCounters() {
+        @Override
+        public long threadAllocatedBytes() {
+            return -1;
+        }
+
+        @Override
+        public long gcCount() {
+            return 0;
+        }
+
+        @Override
+        public long gcTimeMillis() {
+            return 0;
+        }
+    };
+}
@@ -0,0 +1,41 @@
+package com.animedetector;
+
+/**
+ * ✅ الحلقات الساخنة على المصفوفات البدائية خلف واجهة واحدة: التنفيذ العددي (ScalarKernels) هو
+ * الافتراضي وعلى Android، ونسخة Vector API تُختار على JVM سطح المكتب عبر Kernels.get().
+ * كل تنفيذ يجب أن يعطي نفس المخرجات بتاً ببت (نفس ترتيب عمليات الفاصلة العائمة، بدون FMA).
+ */
+public interface ArrayKernels {
+    String name();
+
+    /**
+     * صف من ARGB إلى ثلاث قنوات عائمة: out = (c / 255 - mean) / std.
+     * الجداول lut* تحمل نفس القيم محسوبة مسبقاً لكل بايت (يستخدمها التنفيذ العددي)
+     */
+    void convertRow(int[] pixels, int offset, int length,
+                    float[] mean, float[] std, float[] lutR, float[] lutG, float[] lutB,
+                    float[] rowR, float[] rowG, float[] rowB, int rowOffset);
+
+    /**
+     * best[i] = max(best[i], src[srcOffset + i]) مع تسجيل classId عند الزيادة الصارمة فقط
+     */
+    void argmaxUpdate(float[] src, int srcOffset, int length, float[] best, int[] bestClass, int classId);
+
+    /**
+     * فهارس values[i] > threshold تصاعدياً في out؛ يعيد عددها
+     */
+    int selectAbove(float[] values, int length, float threshold, int[] out);
+
+    /**
+     * كبت كل j في (i, n) يتجاوز تداخله مع i العتبة؛ الصناديق مرتبة بالثقة مسبقاً
+     */
+    void suppressOverlaps(float[] x1, float[] y1, float[] x2, float[] y2, float[] area, int[] classId,
+                          boolean[] suppressed, int i, int n, float iouThreshold, boolean perClass);
+
+    /**
+     * فهارس [from, to) ذات نفس الفئة ومسافة مركزها المربعة عن (tx, ty) أقل من thresholdSq،
+     * تصاعدياً وبحد أقصى maxOut؛ يعيد عددها
+     */
+    int selectWithin(float[] cx, float[] cy, int[] classId, int from, int to,
+                     float tx, float ty, int targetClass, float thresholdSq, int[] out, int maxOut);
+}
@@ -0,0 +1,237 @@
+package com.animedetector;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * ✅ إيقاع المحتوى بدل تخطي عدد ثابت من الإطارات: الأنمي يُرسم بـ 24 إطاراً أو أقل (12 "على اثنين")
+ * ويُعرض بـ 60-120Hz، فأغلب الإطارات الملتقطة نسخ مكررة. يتعلم فترة إطار المحتوى وطوره من
+ * Image.getTimestamp وفرق بصمة السطوع، ويختار أول إطار ملتقط من كل إطار محتوى جديد للاستدلال
+ * ضمن نفس الميزانية (حد أدنى للفاصل بين استدلالين)
+ */
+public class CadenceEstimator {
+    private static final int GRID = 32;
+    // 4×4 نقاط لكل خلية = 16K قراءة للإطار على خيط الالتقاط
+    private static final int CELL_SAMPLES = 4;
+    private static final int HISTORY = 16;
+    private static final int MIN_INTERVALS = 4;
+
+    // فرق متوسط سطوع الخلية (0-255) الذي يُعد تغيّراً؛ الالتقاط بلا ضغط فالنسخ المكررة متطابقة تقريباً
+    private static final int CELL_NOISE = 3;
+    private static final int MIN_CHANGED_CELLS = 2;
+    // خلية واحدة بفرق متوسط بهذا الحجم تغيّر حقيقي حتى قبل القفل (المتوسط يُخمد ضجيج البكسل المفرد)
+    private static final int STRONG_CELL_DIFF = 12;
+
+    // فاصل أطول من هذا بين إطاري محتوى توقف وليس إيقاعاً
+    private static final long MAX_CONTENT_INTERVAL_NANOS = 250_000_000L;
+    private static final long DEFAULT_CAPTURE_INTERVAL_NANOS = 16_666_667L;
+    private static final float PERIOD_TOLERANCE = 0.2f;
+    private static final float LOCK_RATIO = 0.75f;
+
+    private final long minInferenceIntervalNanos;
+    private final long maxIdleNanos;
+
+    private final int[] reference = new int[GRID * GRID];
+    private final int[] current = new int[GRID * GRID];
+    private boolean hasReference;
+    private int maxCellDiff;
+
+    private final long[] intervals = new long[HISTORY];
+    private final long[] sorted = new long[HISTORY];
+    private int intervalCount;
+    private int intervalIndex;
+
+    private long lastCapture;
+    private long captureInterval;
+    private long lastChange;
+    private long contentPeriod;
+    private boolean locked;
+
+    private boolean unprocessed;
+    private double credit = 1.0;
+    private long lastCredit;
+    private long lastInference;
+
+    private long capturedFrames;
+    private long contentFrames;
+    private long phaseFrames;
+    private long inferences;
+
+    /**
+     * @param minInferenceIntervalNanos ميزانية الحساب: أقل فاصل بين استدلالين
+     * @param maxIdleNanos استدلال دوري على مشهد ثابت حتى لا تنتهي مهلة إخفاء الـ overlay
+     */
+    public CadenceEstimator(long minInferenceIntervalNanos, long maxIdleNanos) {
+        this.minInferenceIntervalNanos = minInferenceIntervalNanos;
+        this.maxIdleNanos = maxIdleNanos;
+    }
+
+    /**
+     * كل إطار ملتقط (على خيط الالتقاط): يعيد true إذا كان أول إطار من محتوى جديد
+     */
+    public synchronized boolean onFrame(ByteBuffer pixels, int rowStride, int pixelStride,
+                                        int width, int height, long timestampNanos) {
+        capturedFrames++;
+        if (lastCapture != 0) {
+            long delta = timestampNanos - lastCapture;
+            if (delta > 0 && delta < MAX_CONTENT_INTERVAL_NANOS) {
+                captureInterval = captureInterval == 0 ? delta : (captureInterval * 7 + delta) / 8;
+            }
+        }
+        lastCapture = timestampNanos;
+
+        FrameChangeMonitor.sampleMeans(pixels, rowStride, pixelStride, width, height, GRID, CELL_SAMPLES, current);
+
+        // المقارنة مع آخر إطار محتوى لا مع الإطار الملتقط السابق: التغيّر البطيء يتراكم حتى يُرى
+        boolean fresh;
+        if (!hasReference) {
+            fresh = true;
+        } else {
+            int changed = changedCells();
+            boolean strong = changed >= MIN_CHANGED_CELLS || maxCellDiff >= STRONG_CELL_DIFF;
+            fresh = strong || (changed > 0 && onPredictedPhase(timestampNanos));
+            if (fresh && !strong) phaseFrames++;
+        }
+        if (!fresh) return false;
+
+        System.arraycopy(current, 0, reference, 0, current.length);
+        hasReference = true;
+        recordChange(timestampNanos);
+        unprocessed = true;
+        contentFrames++;
+        return true;
+    }
+
+    /**
+     * محتوى جديد لم يُستدلّ عليه والميزانية تسمح، أو مشهد ثابت تجاوز مهلة الخمول.
+     * إذا كان الكاشف مشغولاً يبقى المحتوى معلّقاً فيُستدلّ على أول إطار بعد انتهائه
+     */
+    public synchronized boolean shouldInfer(long timestampNanos) {
+        accrue(timestampNanos);
+        if (unprocessed) return credit >= 1.0;
+        return timestampNanos - lastInference >= maxIdleNanos;
+    }
+
+    /**
+     * بدأ الاستدلال فعلاً على إطار بهذا الطابع
+     */
+    public synchronized void markInferred(long timestampNanos) {
+        accrue(timestampNanos);
+        credit = Math.max(0.0, credit - 1.0);
+        unprocessed = false;
+        lastInference = timestampNanos;
+        inferences++;
+    }
+
+    /**
+     * تغيّر دقة الالتقاط: البصمة والإيقاع من البداية
+     */
+    public synchronized void reset() {
+        hasReference = false;
+        intervalCount = 0;
+        intervalIndex = 0;
+        lastCapture = 0;
+        captureInterval = 0;
+        lastChange = 0;
+        contentPeriod = 0;
+        locked = false;
+        unprocessed = false;
+    }
+
+    private int changedCells() {
+        int changed = 0;
+        int max = 0;
+        for (int i = 0; i < current.length; i++) {
+            int diff = Math.abs(current[i] - reference[i]);
+            if (diff > CELL_NOISE) changed++;
+            if (diff > max) max = diff;
+        }
+        maxCellDiff = max;
+        return changed;
+    }
+
+    /**
+     * عند الإيقاع المقفل يكفي تغيّر خلية واحدة في موضع إطار المحتوى المتوقع (حركة فم صغيرة مثلاً)
+     */
+    private boolean onPredictedPhase(long timestampNanos) {
+        if (!locked) return false;
+
+        long since = timestampNanos - lastChange;
+        long slot = Math.round((double) since / contentPeriod);
+        if (slot < 1) return false;
+
+        // فترة المحتوى ليست مضاعفاً صحيحاً لفترة الالتقاط غالباً، والتغيّر الحقيقي يُرى في أول إطار ملتقط
+        // بعده: نقبل انحرافاً حتى 3/4 فترة التقاط عن الموضع المتوقع
+        return Math.abs(since - slot * contentPeriod) <= captureInterval() * 3 / 4;
+    }
+
+    private long captureInterval() {
+        return captureInterval > 0 ? captureInterval : DEFAULT_CAPTURE_INTERVAL_NANOS;
+    }
+
+    private void recordChange(long timestampNanos) {
+        long interval = timestampNanos - lastChange;
+        boolean continuous = lastChange != 0 && interval > 0 && interval < MAX_CONTENT_INTERVAL_NANOS;
+        lastChange = timestampNanos;
+        if (!continuous) return;
+
+        intervals[intervalIndex] = interval;
+        intervalIndex = (intervalIndex + 1) % HISTORY;
+        if (intervalCount < HISTORY) intervalCount++;
+
+        // متوسط مقصوص الربعين: 24fps على 60Hz تصل بفواصل 2:3 متناوبة (33/50ms) ومتوسطها الفترة الحقيقية،
+        // والإمساك على ثلاثة أو إطار مفقود لا يحرّكه. القفل فقط إذا اتفقت أغلب الفواصل معه
+        System.arraycopy(intervals, 0, sorted, 0, intervalCount);
+        Arrays.sort(sorted, 0, intervalCount);
+        int from = intervalCount / 4;
+        int to = intervalCount - from;
+        long sum = 0;
+        for (int i = from; i < to; i++) sum += sorted[i];
+        contentPeriod = sum / (to - from);
+
+        long tolerance = Math.max((long) (contentPeriod * PERIOD_TOLERANCE), captureInterval());
+        int agreeing = 0;
+        for (int i = 0; i < intervalCount; i++) {
+            if (Math.abs(sorted[i] - contentPeriod) <= tolerance) agreeing++;
+        }
+        locked = intervalCount >= MIN_INTERVALS && agreeing >= intervalCount * LOCK_RATIO;
+    }
+
+    private void accrue(long timestampNanos) {
+        if (lastCredit != 0 && timestampNanos > lastCredit) {
+            credit = Math.min(1.0, credit + (double) (timestampNanos - lastCredit) / minInferenceIntervalNanos);
+        }
+        lastCredit = timestampNanos;
+    }
+
+    public synchronized boolean isLocked() {
+        return locked;
+    }
+
+    /**
+     * معدل إطارات المحتوى المقدّر، 0 قبل القفل
+     */
+    public synchronized float getContentFps() {
+        return locked ? 1e9f / contentPeriod : 0f;
+    }
+
+    /**
+     * نسبة الإطارات الملتقطة المكررة (لا محتوى جديد)
+     */
+    public synchronized float getDuplicateFraction() {
+        return capturedFrames > 0 ? 1f - (float) contentFrames / capturedFrames : 0f;
+    }
+
+    public synchronized long getPhaseFrames() {
+        return phaseFrames;
+    }
+
+    public synchronized long getInferences() {
+        return inferences;
+    }
+
+    public synchronized String summary() {
+        String rate = locked ? String.format("%.0f", getContentFps()) : "?";
+        return String.format("%sfps dup%.0f%%", rate, getDuplicateFraction() * 100);
+    }
+}
@@ -0,0 +1,181 @@
+package com.animedetector;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+
+import java.util.List;
+
+/**
+ * ✅ رسم الحجب فوق الصناديق: نمط معتم أو فسيفساء أو تمويه محسوب من الإطار الملتقط
+ */
+public class CensorRenderer {
+    public enum Mode { PATTERN, MOSAIC, BLUR }
+
+    private static final int MAX_BLOCKS = 64;
+    private static final int MOSAIC_BLOCKS = 12;
+    private static final int BLUR_BLOCKS = 6;
+    private static final float MARGIN = 0.05f;
+
+    private final Paint patternPaint;
+    private final Paint mosaicPaint = new Paint();
+    private final Paint blurPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    private final long budgetNanos;
+    private final long pixelBudget;
+
+    private final Bitmap blockBitmap;
+    private final int[] blockPixels = new int[MAX_BLOCKS * MAX_BLOCKS];
+    private final int[] sumR = new int[MAX_BLOCKS];
+    private final int[] sumG = new int[MAX_BLOCKS];
+    private final int[] sumB = new int[MAX_BLOCKS];
+    private final int[] counts = new int[MAX_BLOCKS];
+    private int[] rowPixels = new int[0];
+
+    private final Rect src = new Rect();
+    private final Rect dst = new Rect();
+
+    private volatile Mode mode = Mode.PATTERN;
+    private long fallbackBoxes;
+    private long lastRenderNanos;
+
+    /**
+     * @param budgetMillis الحد الأقصى لزمن الرسم في الإطار؛ الصناديق المتبقية بعده تُرسم بالنمط
+     * @param pixelBudget  عدد البكسلات المقروءة كحد أقصى في الإطار؛ يُخفَّض معدل العينة عند تجاوزه
+     */
+    public CensorRenderer(Paint patternPaint, float budgetMillis, long pixelBudget) {
+        this.patternPaint = patternPaint;
+        this.budgetNanos = (long) (budgetMillis * 1_000_000L);
+        this.pixelBudget = pixelBudget;
+        this.mosaicPaint.setFilterBitmap(false);
+        this.mosaicPaint.setAntiAlias(false);
+        this.blockBitmap = Bitmap.createBitmap(MAX_BLOCKS, MAX_BLOCKS, Bitmap.Config.ARGB_8888);
+    }
+
+    public void setMode(Mode mode) {
+        this.mode = mode;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public synchronized void draw(Canvas canvas, Bitmap frame,
+                                  List<Detection> detections) {
+        long start = System.nanoTime();
+        Mode current = mode;
+
+        long totalPixels = 0;
+        if (current != Mode.PATTERN) {
+            for (Detection det : detections) totalPixels += (long) (det.area * 1.21f);
+        }
+        int stride = 1;
+        while (totalPixels / ((long) stride * stride) > pixelBudget) stride++;
+
+        for (Detection det : detections) {
+            float margin = Math.min(det.width, det.height) * MARGIN;
+
+            if (current == Mode.PATTERN || frame == null || System.nanoTime() - start > budgetNanos) {
+                if (current != Mode.PATTERN) fallbackBoxes++;
+                canvas.drawRect(
+                    det.x1 - margin, det.y1 - margin,
+                    det.x2 + margin, det.y2 + margin,
+                    patternPaint
+                );
+                continue;
+            }
+
+            dst.set(
+                Math.max(0, (int) (det.x1 - margin)),
+                Math.max(0, (int) (det.y1 - margin)),
+                Math.min(frame.getWidth(), (int) (det.x2 + margin)),
+                Math.min(frame.getHeight(), (int) (det.y2 + margin))
+            );
+            if (dst.width() <= 0 || dst.height() <= 0) continue;
+
+            int blocks = current == Mode.MOSAIC ? MOSAIC_BLOCKS : BLUR_BLOCKS;
+            int blockSize = Math.max(1, Math.min(dst.width(), dst.height()) / blocks);
+            int bw = Math.min(MAX_BLOCKS, (dst.width() + blockSize - 1) / blockSize);
+            int bh = Math.min(MAX_BLOCKS, (dst.height() + blockSize - 1) / blockSize);
+
+            averageBlocks(frame, dst, bw, bh, stride);
+
+            blockBitmap.setPixels(blockPixels, 0, MAX_BLOCKS, 0, 0, bw, bh);
+            src.set(0, 0, bw, bh);
+            canvas.drawBitmap(blockBitmap, src, dst, current == Mode.MOSAIC ? mosaicPaint : blurPaint);
+        }
+
+        lastRenderNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * متوسطات الكتل صفاً بصف: قراءة صف واحد في كل مرة وتجميع القنوات لكل عمود كتل
+     */
+    private void averageBlocks(Bitmap frame, Rect area, int bw, int bh, int stride) {
+        int w = area.width();
+        int h = area.height();
+        if (rowPixels.length < w) rowPixels = new int[w];
+
+        for (int by = 0; by < bh; by++) {
+            int y0 = by * h / bh;
+            int y1 = (by + 1) * h / bh;
+
+            for (int bx = 0; bx < bw; bx++) {
+                sumR[bx] = 0;
+                sumG[bx] = 0;
+                sumB[bx] = 0;
+                counts[bx] = 0;
+            }
+
+            for (int y = y0; y < y1; y += stride) {
+                frame.getPixels(rowPixels, 0, w, area.left, area.top + y, w, 1);
+
+                for (int bx = 0; bx < bw; bx++) {
+                    int x0 = bx * w / bw;
+                    int x1 = (bx + 1) * w / bw;
+                    int r = 0, g = 0, b = 0, n = 0;
+                    for (int x = x0; x < x1; x += stride) {
+                        int p = rowPixels[x];
+                        r += (p >> 16) & 0xFF;
+                        g += (p >> 8) & 0xFF;
+                        b += p & 0xFF;
+                        n++;
+                    }
+                    sumR[bx] += r;
+                    sumG[bx] += g;
+                    sumB[bx] += b;
+                    counts[bx] += n;
+                }
+            }
+
+            int base = by * MAX_BLOCKS;
+            for (int bx = 0; bx < bw; bx++) {
+                int n = Math.max(1, counts[bx]);
+                blockPixels[base + bx] = 0xFF000000 |
+                    ((sumR[bx] / n) << 16) | ((sumG[bx] / n) << 8) | (sumB[bx] / n);
+            }
+        }
+    }
+
+    public synchronized void trim() {
+        rowPixels = new int[0];
+    }
+
+    public synchronized long getBufferBytes() {
+        return (long) (rowPixels.length + blockPixels.length) * Integer.BYTES +
+            (long) MAX_BLOCKS * MAX_BLOCKS * 4;
+    }
+
+    public synchronized long getFallbackBoxes() {
+        return fallbackBoxes;
+    }
+
+    public synchronized float getLastRenderMillis() {
+        return lastRenderNanos / 1_000_000f;
+    }
+
+    public void release() {
+        if (!blockBitmap.isRecycled()) blockBitmap.recycle();
+    }
+}
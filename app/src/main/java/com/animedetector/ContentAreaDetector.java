@@ -0,0 +1,289 @@
+package com.animedetector;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ✅ تحديد منطقة المحتوى الفعلية: إزالة أشرطة letterbox وأشرطة النظام الثابتة ومناطق الاستبعاد
+ */
+public class ContentAreaDetector {
+    private static final int BLACK_LUMA = 16;
+    private static final int SAMPLE_LINES = 32;
+    private static final int FULL_SCAN_INTERVAL = 30;
+    private static final int STATIC_FRAMES_REQUIRED = 3;
+    private static final float MIN_BAR_FRACTION = 0.02f;
+    private static final float MIN_CONTENT_FRACTION = 0.25f;
+    private static final int MIN_CHANGE_PX = 8;
+
+    private final int baseTopInset;
+    private final int baseBottomInset;
+    private final int referenceHeight;
+    private int topInset;
+    private int bottomInset;
+    private final List<Rect> baseExclusionZones = new ArrayList<>();
+    private final List<Rect> exclusionZones = new ArrayList<>();
+
+    private final Rect content = new Rect();
+    private final Rect scanned = new Rect();
+    private int frameWidth;
+    private int frameHeight;
+    private int framesSinceScan = FULL_SCAN_INTERVAL;
+
+    private int[] lineBuffer = new int[0];
+    private int[] topSignature = new int[0];
+    private int[] bottomSignature = new int[0];
+    private int topStaticFrames;
+    private int bottomStaticFrames;
+
+    private long fullScans;
+    private long revalidationFailures;
+
+    /**
+     * @param topInset        ارتفاع شريط الحالة (يُستبعد فقط إذا بقي ثابتاً عبر الإطارات)
+     * @param bottomInset     ارتفاع شريط التنقل (يُستبعد فقط إذا بقي ثابتاً عبر الإطارات)
+     * @param referenceHeight ارتفاع الشاشة الذي قيست عليه الأشرطة؛ تُحجَّم مع دقة الالتقاط
+     */
+    public ContentAreaDetector(int topInset, int bottomInset, int referenceHeight) {
+        this.baseTopInset = topInset;
+        this.baseBottomInset = bottomInset;
+        this.referenceHeight = referenceHeight;
+        this.topInset = topInset;
+        this.bottomInset = bottomInset;
+    }
+
+    /**
+     * @param zones بإحداثيات الشاشة (referenceHeight)؛ تُحجَّم مع دقة الالتقاط مثل الأشرطة
+     */
+    public synchronized void setExclusionZones(List<Rect> zones) {
+        baseExclusionZones.clear();
+        for (Rect zone : zones) baseExclusionZones.add(new Rect(zone));
+        scaleExclusionZones();
+        framesSinceScan = FULL_SCAN_INTERVAL;
+    }
+
+    private void scaleExclusionZones() {
+        exclusionZones.clear();
+        // قبل أول إطار: الدقة غير معروفة بعد، وتُحجَّم عند update(). الالتقاط يُصغَّر بنفس النسبة على المحورين
+        if (frameHeight == 0) return;
+
+        for (Rect zone : baseExclusionZones) {
+            exclusionZones.add(new Rect(
+                (int) ((long) zone.left * frameHeight / referenceHeight),
+                (int) ((long) zone.top * frameHeight / referenceHeight),
+                (int) ((long) zone.right * frameHeight / referenceHeight),
+                (int) ((long) zone.bottom * frameHeight / referenceHeight)
+            ));
+        }
+    }
+
+    /**
+     * يعيد منطقة المحتوى للإطار الحالي، أو null إذا كان الإطار كاملاً هو المحتوى
+     */
+    public synchronized Rect update(Bitmap frame) {
+        int w = frame.getWidth();
+        int h = frame.getHeight();
+
+        if (w != frameWidth || h != frameHeight) {
+            frameWidth = w;
+            frameHeight = h;
+            topInset = (int) ((long) baseTopInset * h / referenceHeight);
+            bottomInset = (int) ((long) baseBottomInset * h / referenceHeight);
+            scaleExclusionZones();
+            content.set(0, 0, w, h);
+            framesSinceScan = FULL_SCAN_INTERVAL;
+            topStaticFrames = 0;
+            bottomStaticFrames = 0;
+        }
+
+        updateStaticBars(frame);
+
+        framesSinceScan++;
+        if (framesSinceScan >= FULL_SCAN_INTERVAL || !revalidate(frame)) {
+            fullScan(frame);
+            framesSinceScan = 0;
+        }
+
+        if (content.left == 0 && content.top == 0 && content.right == w && content.bottom == h) {
+            return null;
+        }
+        return new Rect(content);
+    }
+
+    private void updateStaticBars(Bitmap frame) {
+        if (topInset > 0) {
+            int[] sig = sampleRow(frame, topInset / 2, 0, frameWidth);
+            topStaticFrames = sameSignature(sig, topSignature) ? topStaticFrames + 1 : 0;
+            topSignature = sig.clone();
+        }
+        if (bottomInset > 0) {
+            int[] sig = sampleRow(frame, frameHeight - bottomInset / 2 - 1, 0, frameWidth);
+            bottomStaticFrames = sameSignature(sig, bottomSignature) ? bottomStaticFrames + 1 : 0;
+            bottomSignature = sig.clone();
+        }
+    }
+
+    private void fullScan(Bitmap frame) {
+        fullScans++;
+
+        int top = topStaticFrames >= STATIC_FRAMES_REQUIRED ? topInset : 0;
+        int bottom = bottomStaticFrames >= STATIC_FRAMES_REQUIRED ? frameHeight - bottomInset : frameHeight;
+        int left = 0;
+        int right = frameWidth;
+
+        for (Rect zone : exclusionZones) {
+            if (zone.left <= 0 && zone.right >= frameWidth) {
+                if (zone.top <= top) top = Math.max(top, zone.bottom);
+                else if (zone.bottom >= bottom) bottom = Math.min(bottom, zone.top);
+            } else if (zone.top <= 0 && zone.bottom >= frameHeight) {
+                if (zone.left <= left) left = Math.max(left, zone.right);
+                else if (zone.right >= right) right = Math.min(right, zone.left);
+            }
+        }
+
+        int minBarY = (int) (frameHeight * MIN_BAR_FRACTION);
+        int minBarX = (int) (frameWidth * MIN_BAR_FRACTION);
+
+        int contentTop = top;
+        while (contentTop < bottom && isBlackRow(frame, contentTop, left, right)) contentTop++;
+        int contentBottom = bottom;
+        while (contentBottom > contentTop && isBlackRow(frame, contentBottom - 1, left, right)) contentBottom--;
+
+        if (contentTop - top >= minBarY) top = contentTop;
+        if (bottom - contentBottom >= minBarY) bottom = contentBottom;
+
+        int contentLeft = left;
+        while (contentLeft < right && isBlackColumn(frame, contentLeft, top, bottom)) contentLeft++;
+        int contentRight = right;
+        while (contentRight > contentLeft && isBlackColumn(frame, contentRight - 1, top, bottom)) contentRight--;
+
+        if (contentLeft - left >= minBarX) left = contentLeft;
+        if (right - contentRight >= minBarX) right = contentRight;
+
+        // مشهد مظلم بالكامل: لا نثق بالنتيجة ونبقي المنطقة السابقة
+        if (right - left < frameWidth * MIN_CONTENT_FRACTION ||
+            bottom - top < frameHeight * MIN_CONTENT_FRACTION) {
+            return;
+        }
+
+        scanned.set(left, top, right, bottom);
+
+        if (Math.abs(scanned.left - content.left) >= MIN_CHANGE_PX ||
+            Math.abs(scanned.top - content.top) >= MIN_CHANGE_PX ||
+            Math.abs(scanned.right - content.right) >= MIN_CHANGE_PX ||
+            Math.abs(scanned.bottom - content.bottom) >= MIN_CHANGE_PX) {
+            content.set(scanned);
+        }
+    }
+
+    /**
+     * فحص رخيص: الأشرطة السوداء المقصوصة يجب أن تبقى سوداء
+     */
+    private boolean revalidate(Bitmap frame) {
+        boolean valid = true;
+        int topBar = topStaticFrames >= STATIC_FRAMES_REQUIRED ? topInset : 0;
+        int bottomBar = bottomStaticFrames >= STATIC_FRAMES_REQUIRED ? frameHeight - bottomInset : frameHeight;
+
+        if (content.top > topBar && !isBlackRow(frame, content.top - 1, content.left, content.right)) valid = false;
+        if (content.bottom < bottomBar && !isBlackRow(frame, content.bottom, content.left, content.right)) valid = false;
+        if (content.left > 0 && !isBlackColumn(frame, content.left - 1, content.top, content.bottom)) valid = false;
+        if (content.right < frameWidth && !isBlackColumn(frame, content.right, content.top, content.bottom)) valid = false;
+
+        if (!valid) revalidationFailures++;
+        return valid;
+    }
+
+    private boolean isBlackRow(Bitmap frame, int y, int left, int right) {
+        int span = right - left;
+        if (span <= 0) return true;
+
+        ensureLineBuffer(span);
+        frame.getPixels(lineBuffer, 0, span, left, y, span, 1);
+
+        int step = Math.max(1, span / SAMPLE_LINES);
+        for (int i = 0; i < span; i += step) {
+            if (luma(lineBuffer[i]) > BLACK_LUMA) return false;
+        }
+        return true;
+    }
+
+    private boolean isBlackColumn(Bitmap frame, int x, int top, int bottom) {
+        int span = bottom - top;
+        if (span <= 0) return true;
+
+        ensureLineBuffer(span);
+        frame.getPixels(lineBuffer, 0, 1, x, top, 1, span);
+
+        int step = Math.max(1, span / SAMPLE_LINES);
+        for (int i = 0; i < span; i += step) {
+            if (luma(lineBuffer[i]) > BLACK_LUMA) return false;
+        }
+        return true;
+    }
+
+    private int[] sampleRow(Bitmap frame, int y, int left, int right) {
+        int span = right - left;
+        ensureLineBuffer(Math.max(span, SAMPLE_LINES));
+        frame.getPixels(lineBuffer, 0, span, left, y, span, 1);
+
+        int[] samples = new int[SAMPLE_LINES];
+        for (int i = 0; i < SAMPLE_LINES; i++) {
+            samples[i] = lineBuffer[(int) ((long) i * span / SAMPLE_LINES)];
+        }
+        return samples;
+    }
+
+    private void ensureLineBuffer(int size) {
+        if (lineBuffer.length < size) lineBuffer = new int[size];
+    }
+
+    private static boolean sameSignature(int[] a, int[] b) {
+        if (a.length != b.length) return false;
+        for (int i = 0; i < a.length; i++) {
+            if (Math.abs(luma(a[i]) - luma(b[i])) > 2) return false;
+        }
+        return true;
+    }
+
+    private static int luma(int p) {
+        return (((p >> 16) & 0xFF) * 77 + ((p >> 8) & 0xFF) * 150 + (p & 0xFF) * 29) >> 8;
+    }
+
+    /**
+     * إسقاط الكشوفات التي يقع مركزها داخل منطقة استبعاد داخلية
+     */
+    public synchronized DetectionResult filter(
+            DetectionResult result) {
+
+        if (exclusionZones.isEmpty()) return result;
+
+        List<Detection> kept = new ArrayList<>(result.detections.size());
+        for (Detection det : result.detections) {
+            boolean excluded = false;
+            for (Rect zone : exclusionZones) {
+                if (zone.contains((int) det.centerX, (int) det.centerY)) {
+                    excluded = true;
+                    break;
+                }
+            }
+            if (!excluded) kept.add(det);
+        }
+
+        if (kept.size() == result.detections.size()) return result;
+        return new DetectionResult(kept, result.imageWidth, result.imageHeight);
+    }
+
+    public synchronized void trim() {
+        lineBuffer = new int[0];
+    }
+
+    public synchronized long getFullScans() {
+        return fullScans;
+    }
+
+    public synchronized long getRevalidationFailures() {
+        return revalidationFailures;
+    }
+}
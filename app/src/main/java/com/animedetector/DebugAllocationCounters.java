@@ -0,0 +1,43 @@
+package com.animedetector;
+
+import android.os.Debug;
+
+/**
+ * ✅ عدادات ART: حجم تخصيصات الخيط من Debug وإحصاءات GC من art.gc.*.
+ * العد يبطّئ التخصيص قليلاً في ART، لذلك يُفعَّل فقط عند طلب القياس ويُوقف بـ stop()
+ */
+@SuppressWarnings("deprecation")
+public class DebugAllocationCounters implements AllocationCounters {
+    public DebugAllocationCounters() {
+        Debug.startAllocCounting();
+    }
+
+    @Override
+    public long threadAllocatedBytes() {
+        return Debug.getThreadAllocSize();
+    }
+
+    @Override
+    public long gcCount() {
+        return parseStat("art.gc.gc-count");
+    }
+
+    @Override
+    public long gcTimeMillis() {
+        return parseStat("art.gc.gc-time");
+    }
+
+    public void stop() {
+        Debug.stopAllocCounting();
+    }
+
+    private static long parseStat(String name) {
+        String value = Debug.getRuntimeStat(name);
+        if (value == null) return 0;
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.animedetector;
+
+/**
+ * ✅ صندوق كشف واحد بإحداثيات الصورة الكاملة.
+ * الحقول للقراءة فقط خارج الحزمة؛ الصناديق المأخوذة من DetectionPool تُعاد كتابتها عند إعادة استخدامها
+ */
+public class Detection {
+    private static final float MIN_VISIBLE_FRACTION = 0.25f;
+
+    public float x1, y1, x2, y2;
+    public float width, height;
+    public float confidence;
+    public int classId;
+    public float centerX, centerY;
+    public float area;
+
+    public Detection(float x1, float y1, float x2, float y2, float conf, int cls) {
+        set(x1, y1, x2, y2, conf, cls);
+    }
+
+    Detection set(float x1, float y1, float x2, float y2, float conf, int cls) {
+        this.x1 = x1;
+        this.y1 = y1;
+        this.x2 = x2;
+        this.y2 = y2;
+        this.width = x2 - x1;
+        this.height = y2 - y1;
+        this.confidence = conf;
+        this.classId = cls;
+        this.centerX = (x1 + x2) * 0.5f;
+        this.centerY = (y1 + y2) * 0.5f;
+        this.area = width * height;
+        return this;
+    }
+
+    /**
+     * إزاحة مع قص عند حواف الصورة؛ null إذا بقي ظاهراً أقل من ربع الصندوق
+     */
+    Detection translate(float dx, float dy, int imageWidth, int imageHeight) {
+        float nx1 = Math.max(0f, x1 + dx);
+        float ny1 = Math.max(0f, y1 + dy);
+        float nx2 = Math.min(imageWidth, x2 + dx);
+        float ny2 = Math.min(imageHeight, y2 + dy);
+
+        if (nx2 <= nx1 || ny2 <= ny1) return null;
+
+        float visible = (nx2 - nx1) * (ny2 - ny1);
+        if (visible < area * MIN_VISIBLE_FRACTION) return null;
+
+        return new Detection(nx1, ny1, nx2, ny2, confidence, classId);
+    }
+
+    /**
+     * نفس translate في المكان (صناديق المنعّم المملوكة له)؛ false إذا يجب إسقاط الصندوق
+     */
+    boolean translateInPlace(float dx, float dy, int imageWidth, int imageHeight) {
+        float nx1 = Math.max(0f, x1 + dx);
+        float ny1 = Math.max(0f, y1 + dy);
+        float nx2 = Math.min(imageWidth, x2 + dx);
+        float ny2 = Math.min(imageHeight, y2 + dy);
+
+        if (nx2 <= nx1 || ny2 <= ny1) return false;
+        if ((nx2 - nx1) * (ny2 - ny1) < area * MIN_VISIBLE_FRACTION) return false;
+
+        set(nx1, ny1, nx2, ny2, confidence, classId);
+        return true;
+    }
+}
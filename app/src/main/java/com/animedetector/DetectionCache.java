@@ -0,0 +1,255 @@
+package com.animedetector;
+
+import android.graphics.Bitmap;
+import android.graphics.Matrix;
+import android.graphics.Rect;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ✅ كاش LRU لنتائج الكشف مفهرس ببصمة إدراكية للإطار المصغّر
+ */
+public class DetectionCache {
+    private static final int HASH_GRID = 8;
+    private static final int BOX_STRIDE = 6;
+    private static final int ENTRY_OVERHEAD = 96;
+
+    private final int thumbSize;
+    private final int defaultMaxEntries;
+    private final long defaultMaxBytes;
+    private int maxEntries;
+    private long maxBytes;
+    private final int maxCellDiff;
+
+    private final LinkedHashMap<Long, Entry> entries;
+    private final int[] thumbPixels;
+    private long currentBytes;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long rejects;
+
+    public static class Fingerprint {
+        public final long hash;
+        final byte[] luma;
+        final Rect region;
+
+        Fingerprint(long hash, byte[] luma, Rect region) {
+            this.hash = hash;
+            this.luma = luma;
+            this.region = region;
+        }
+    }
+
+    private static class Entry {
+        final byte[] luma;
+        final Rect region;
+        final float[] boxes;
+        final int imageWidth;
+        final int imageHeight;
+        final int bytes;
+
+        Entry(byte[] luma, Rect region, float[] boxes, int imageWidth, int imageHeight) {
+            this.luma = luma;
+            this.region = region;
+            this.boxes = boxes;
+            this.imageWidth = imageWidth;
+            this.imageHeight = imageHeight;
+            this.bytes = ENTRY_OVERHEAD + luma.length + boxes.length * Float.BYTES;
+        }
+    }
+
+    /**
+     * @param thumbSize   ضلع الصورة المصغّرة المستخدمة للتحقق (مضاعف لـ 8)، أكبر = تصادمات أقل
+     * @param maxCellDiff أقصى فرق سطوع (0-255) في أي خلية من الصورة المصغّرة لقبول الإصابة.
+     *                    الحد لكل خلية لا للمتوسط: شخصية جديدة تغطي خلية أو اثنتين على إطار ثابت
+     *                    لا تغيّر المتوسط تقريباً لكنها إطار مختلف
+     */
+    public DetectionCache(int maxEntries, long maxBytes, int thumbSize, int maxCellDiff) {
+        if (thumbSize < HASH_GRID || thumbSize % HASH_GRID != 0) {
+            throw new IllegalArgumentException("thumbSize must be a multiple of " + HASH_GRID);
+        }
+        this.defaultMaxEntries = maxEntries;
+        this.defaultMaxBytes = maxBytes;
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.thumbSize = thumbSize;
+        this.maxCellDiff = maxCellDiff;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+        this.thumbPixels = new int[thumbSize * thumbSize];
+    }
+
+    public Fingerprint fingerprint(Bitmap bitmap) {
+        return fingerprint(bitmap, null);
+    }
+
+    public Fingerprint fingerprint(Bitmap bitmap, Rect region) {
+        Bitmap thumb;
+        if (region == null) {
+            thumb = Bitmap.createScaledBitmap(bitmap, thumbSize, thumbSize, true);
+        } else {
+            Matrix scale = new Matrix();
+            scale.setScale((float) thumbSize / region.width(), (float) thumbSize / region.height());
+            thumb = Bitmap.createBitmap(
+                bitmap, region.left, region.top, region.width(), region.height(), scale, true
+            );
+        }
+        byte[] luma = new byte[thumbSize * thumbSize];
+
+        synchronized (thumbPixels) {
+            thumb.getPixels(thumbPixels, 0, thumbSize, 0, 0, thumbSize, thumbSize);
+            for (int i = 0; i < thumbPixels.length; i++) {
+                int p = thumbPixels[i];
+                int y = (((p >> 16) & 0xFF) * 77 + ((p >> 8) & 0xFF) * 150 + (p & 0xFF) * 29) >> 8;
+                luma[i] = (byte) y;
+            }
+        }
+
+        if (thumb != bitmap) thumb.recycle();
+
+        return new Fingerprint(averageHash(luma), luma, region == null ? null : new Rect(region));
+    }
+
+    private long averageHash(byte[] luma) {
+        int block = thumbSize / HASH_GRID;
+        int[] sums = new int[HASH_GRID * HASH_GRID];
+        long total = 0;
+
+        for (int y = 0; y < thumbSize; y++) {
+            int row = (y / block) * HASH_GRID;
+            for (int x = 0; x < thumbSize; x++) {
+                int v = luma[y * thumbSize + x] & 0xFF;
+                sums[row + x / block] += v;
+                total += v;
+            }
+        }
+
+        long mean = total / HASH_GRID / HASH_GRID;
+        long hash = 0;
+        for (int i = 0; i < sums.length; i++) {
+            if (sums[i] > mean) hash |= 1L << i;
+        }
+        return hash;
+    }
+
+    public synchronized DetectionResult get(
+            Fingerprint fp, int imageWidth, int imageHeight) {
+
+        Entry entry = entries.get(fp.hash);
+
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+
+        if (entry.imageWidth != imageWidth || entry.imageHeight != imageHeight ||
+            !sameRegion(entry.region, fp.region) ||
+            maxAbsDiff(entry.luma, fp.luma) > maxCellDiff) {
+            rejects++;
+            misses++;
+            return null;
+        }
+
+        hits++;
+
+        List<Detection> detections = new ArrayList<>(entry.boxes.length / BOX_STRIDE);
+        for (int i = 0; i < entry.boxes.length; i += BOX_STRIDE) {
+            detections.add(new Detection(
+                entry.boxes[i], entry.boxes[i + 1], entry.boxes[i + 2], entry.boxes[i + 3],
+                entry.boxes[i + 4], (int) entry.boxes[i + 5]
+            ));
+        }
+
+        return new DetectionResult(detections, imageWidth, imageHeight);
+    }
+
+    public synchronized void put(Fingerprint fp, DetectionResult result) {
+        float[] boxes = new float[result.detections.size() * BOX_STRIDE];
+        int i = 0;
+        for (Detection det : result.detections) {
+            boxes[i++] = det.x1;
+            boxes[i++] = det.y1;
+            boxes[i++] = det.x2;
+            boxes[i++] = det.y2;
+            boxes[i++] = det.confidence;
+            boxes[i++] = det.classId;
+        }
+
+        Entry entry = new Entry(fp.luma, fp.region, boxes, result.imageWidth, result.imageHeight);
+        Entry previous = entries.put(fp.hash, entry);
+        if (previous != null) currentBytes -= previous.bytes;
+        currentBytes += entry.bytes;
+
+        trimTo(maxEntries, maxBytes);
+    }
+
+    private void trimTo(int entryLimit, long byteLimit) {
+        Iterator<Map.Entry<Long, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext() && (entries.size() > entryLimit || currentBytes > byteLimit)) {
+            currentBytes -= it.next().getValue().bytes;
+            it.remove();
+            evictions++;
+        }
+    }
+
+    private static boolean sameRegion(Rect a, Rect b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    private static int maxAbsDiff(byte[] a, byte[] b) {
+        int max = 0;
+        for (int i = 0; i < a.length; i++) {
+            max = Math.max(max, Math.abs((a[i] & 0xFF) - (b[i] & 0xFF)));
+        }
+        return max;
+    }
+
+    public synchronized void setLimits(int maxEntries, long maxBytes) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        trimTo(maxEntries, maxBytes);
+    }
+
+    public synchronized void restoreDefaultLimits() {
+        setLimits(defaultMaxEntries, defaultMaxBytes);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        currentBytes = 0;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized long getRejects() {
+        return rejects;
+    }
+
+    public synchronized float getHitRate() {
+        long total = hits + misses;
+        return total > 0 ? (float) hits / total : 0f;
+    }
+
+    public synchronized long getCurrentBytes() {
+        return currentBytes;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+}
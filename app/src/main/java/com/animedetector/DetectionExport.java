@@ -0,0 +1,144 @@
+package com.animedetector;
+
+import android.os.Binder;
+import android.os.Build;
+import android.os.IBinder;
+import android.os.Parcel;
+import android.os.RemoteException;
+import android.os.SharedMemory;
+import android.system.ErrnoException;
+import android.system.OsConstants;
+import android.util.Log;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * ✅ تصدير الكشوفات الحية للعمليات الأخرى عبر SharedMemory (ashmem).
+ * Binder يُستخدم مرة واحدة فقط لتسليم المنطقة؛ بعدها كل إطار يُكتب في الذاكرة المشتركة بلا IPC.
+ * الـ Binder ثابت ويسلّم منطقة التصدير النشطة حالياً، فيقدّمه DetectionExportService دون أن يبدأ الكشف.
+ */
+public class DetectionExport {
+    private static final String TAG = "DetectionExport";
+    public static final String ACTION_BIND = "com.animedetector.action.BIND_DETECTIONS";
+    public static final String PERMISSION = "com.animedetector.permission.READ_DETECTIONS";
+
+    private static final String DESCRIPTOR = "com.animedetector.DetectionExport";
+    private static final int TRANSACTION_GET_REGION = IBinder.FIRST_CALL_TRANSACTION;
+
+    // النظام يخزّن ناتج onBind طوال حياة الخدمة، فالـ Binder لا يرتبط بتصدير بعينه
+    private static final AtomicReference<DetectionExport> active = new AtomicReference<>();
+    private static final Binder binder = new RegionBinder();
+
+    private final SharedMemory memory;
+    private final ByteBuffer mapping;
+    private final DetectionPublisher publisher;
+    private boolean closed;
+
+    private DetectionExport(SharedMemory memory, ByteBuffer mapping, int capacity) {
+        this.memory = memory;
+        this.mapping = mapping;
+        this.publisher = new DetectionPublisher(mapping, capacity);
+    }
+
+    /**
+     * null إذا لم يدعم الجهاز SharedMemory (قبل API 27) أو حواجز الذاكرة، أو فشل الإنشاء
+     */
+    public static DetectionExport create(int capacity) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O_MR1) {
+            Log.i(TAG, "SharedMemory unavailable, export disabled");
+            return null;
+        }
+        if (!DetectionExportFormat.fencesAvailable()) {
+            Log.w(TAG, "Memory fences unavailable, export disabled");
+            return null;
+        }
+
+        try {
+            SharedMemory memory = SharedMemory.create(
+                "animedetector-detections", DetectionExportFormat.regionSize(capacity)
+            );
+            ByteBuffer mapping = memory.mapReadWrite();
+            // الإسقاطات اللاحقة (عند العملاء) للقراءة فقط؛ إسقاط الكاتب الحالي يبقى قابلاً للكتابة
+            memory.setProtect(OsConstants.PROT_READ);
+            return new DetectionExport(memory, mapping, capacity);
+        } catch (ErrnoException e) {
+            Log.w(TAG, "Failed to create shared region", e);
+            return null;
+        }
+    }
+
+    public void publish(DetectionResult result, long frameIndex, long timestampNanos) {
+        publisher.publish(result, frameIndex, timestampNanos);
+    }
+
+    /**
+     * يجعل هذه المنطقة هي ما يسلّمه الـ Binder للعملاء الجدد
+     */
+    public void activate() {
+        active.set(this);
+    }
+
+    public static IBinder getBinder() {
+        return binder;
+    }
+
+    public DetectionPublisher getPublisher() {
+        return publisher;
+    }
+
+    public synchronized void close() {
+        active.compareAndSet(this, null);
+        closed = true;
+        SharedMemory.unmap(mapping);
+        memory.close();
+    }
+
+    private synchronized void writeRegion(Parcel reply) {
+        reply.writeParcelable(closed ? null : memory, 0);
+    }
+
+    private static class RegionBinder extends Binder {
+        @Override
+        protected boolean onTransact(int code, Parcel data, Parcel reply, int flags)
+                throws RemoteException {
+            if (code != TRANSACTION_GET_REGION) return super.onTransact(code, data, reply, flags);
+
+            data.enforceInterface(DESCRIPTOR);
+            reply.writeNoException();
+            // لا خدمة overlay تعمل = لا منطقة؛ العميل يرى RemoteException("No detection region")
+            DetectionExport export = active.get();
+            if (export != null) {
+                export.writeRegion(reply);
+            } else {
+                reply.writeParcelable(null, 0);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * جهة العميل: طلب المنطقة من الـ IBinder المستلم في onServiceConnected ثم قراءتها دون IPC.
+     * الـ fd يُغلق فوراً؛ الإسقاط يبقى صالحاً حتى يُحرَّر مع القارئ.
+     */
+    public static DetectionReader connect(IBinder service) throws RemoteException, ErrnoException {
+        Parcel data = Parcel.obtain();
+        Parcel reply = Parcel.obtain();
+        try {
+            data.writeInterfaceToken(DESCRIPTOR);
+            service.transact(TRANSACTION_GET_REGION, data, reply, 0);
+            reply.readException();
+
+            SharedMemory memory = reply.readParcelable(SharedMemory.class.getClassLoader());
+            if (memory == null) throw new RemoteException("No detection region");
+            try {
+                return new DetectionReader(memory.mapReadOnly());
+            } finally {
+                memory.close();
+            }
+        } finally {
+            reply.recycle();
+            data.recycle();
+        }
+    }
+}
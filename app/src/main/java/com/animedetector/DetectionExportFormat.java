@@ -0,0 +1,163 @@
+package com.animedetector;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * ✅ التخطيط الثابت لمنطقة تصدير الكشوفات المشتركة بين العمليات (little-endian):
+ *
+ * <pre>
+ *  0  int   MAGIC
+ *  4  int   VERSION
+ *  8  int   السعة (أقصى عدد صناديق)
+ * 12  int   عداد seqlock: فردي = الكتابة جارية
+ * 16  long  طابع زمن الإطار (ns، من Image.getTimestamp)
+ * 24  long  رقم الإطار
+ * 32  int   عرض الصورة
+ * 36  int   ارتفاع الصورة
+ * 40  int   عدد الصناديق
+ * 44  int   محجوز
+ * 48  صناديق: x1, y1, x2, y2, confidence (float) ثم classId (int) — 24 بايت لكل صندوق
+ * </pre>
+ */
+public final class DetectionExportFormat {
+    public static final int MAGIC = 0x58444E41; // "ANDX"
+    public static final int VERSION = 1;
+
+    public static final int OFFSET_MAGIC = 0;
+    public static final int OFFSET_VERSION = 4;
+    public static final int OFFSET_CAPACITY = 8;
+    public static final int OFFSET_SEQUENCE = 12;
+    public static final int OFFSET_TIMESTAMP = 16;
+    public static final int OFFSET_FRAME_INDEX = 24;
+    public static final int OFFSET_WIDTH = 32;
+    public static final int OFFSET_HEIGHT = 36;
+    public static final int OFFSET_COUNT = 40;
+    public static final int HEADER_SIZE = 48;
+    public static final int BOX_SIZE = 24;
+
+    public static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    // VarHandle (JVM سطح المكتب، API 33+) أو Unsafe عبر MethodHandle مربوط يُحلّ مرة واحدة (API 26-32):
+    // لا انعكاس ولا تغليف في كل إطار. بدونهما لا يوجد بديل صحيح: قراءة volatile غير مرتبطة لا تمنع
+    // إعادة ترتيب قراءات المنطقة فيرى القارئ سجلاً ممزقاً، لذلك يُرفض إنشاء الكاتب والقارئ (requireFences)
+    private static final boolean VAR_HANDLE_FENCES;
+    private static final MethodHandle UNSAFE_LOAD_FENCE;
+    private static final MethodHandle UNSAFE_STORE_FENCE;
+
+    static {
+        VAR_HANDLE_FENCES = varHandleFences();
+
+        MethodHandle load = null;
+        MethodHandle store = null;
+        if (!VAR_HANDLE_FENCES) {
+            try {
+                Class<?> type = Class.forName("sun.misc.Unsafe");
+                Field field = type.getDeclaredField("theUnsafe");
+                field.setAccessible(true);
+                Object unsafe = field.get(null);
+                MethodHandles.Lookup lookup = MethodHandles.lookup();
+                load = lookup.unreflect(type.getMethod("loadFence")).bindTo(unsafe);
+                store = lookup.unreflect(type.getMethod("storeFence")).bindTo(unsafe);
+            } catch (Exception | LinkageError e) {
+                load = null;
+                store = null;
+            }
+        }
+        UNSAFE_LOAD_FENCE = load;
+        UNSAFE_STORE_FENCE = store;
+    }
+
+    /**
+     * قيود الواجهات المخفية على ART تطبَّق على getMethod كما على الاستدعاء المباشر
+     */
+    @SuppressWarnings("NewApi")
+    private static boolean varHandleFences() {
+        try {
+            VarHandle.class.getMethod("acquireFence");
+            VarHandle.class.getMethod("releaseFence");
+            return true;
+        } catch (Exception | LinkageError e) {
+            return false;
+        }
+    }
+
+    private DetectionExportFormat() {
+    }
+
+    public static int regionSize(int capacity) {
+        return HEADER_SIZE + capacity * BOX_SIZE;
+    }
+
+    public static int boxOffset(int index) {
+        return HEADER_SIZE + index * BOX_SIZE;
+    }
+
+    public static boolean fencesAvailable() {
+        return VAR_HANDLE_FENCES || (UNSAFE_LOAD_FENCE != null && UNSAFE_STORE_FENCE != null);
+    }
+
+    /**
+     * seqlock بلا حواجز حقيقية يسلّم سجلات ممزقة؛ الكاتب والقارئ يرفضان العمل بدونها
+     */
+    static void requireFences() {
+        if (!fencesAvailable()) {
+            throw new IllegalStateException("Memory fences unavailable; detection export disabled");
+        }
+    }
+
+    /**
+     * يمنع نقل القراءات اللاحقة قبل القراءات السابقة (جهة القارئ)
+     */
+    @SuppressWarnings("NewApi")
+    static void loadFence() {
+        if (VAR_HANDLE_FENCES) {
+            VarHandle.acquireFence();
+            return;
+        }
+        try {
+            UNSAFE_LOAD_FENCE.invokeExact();
+        } catch (Throwable t) {
+            throw new IllegalStateException("Memory fence failed", t);
+        }
+    }
+
+    /**
+     * يمنع نقل الكتابات اللاحقة قبل الكتابات السابقة (جهة الكاتب)
+     */
+    @SuppressWarnings("NewApi")
+    static void storeFence() {
+        if (VAR_HANDLE_FENCES) {
+            VarHandle.releaseFence();
+            return;
+        }
+        try {
+            UNSAFE_STORE_FENCE.invokeExact();
+        } catch (Throwable t) {
+            throw new IllegalStateException("Memory fence failed", t);
+        }
+    }
+
+    /**
+     * منطقة ملف مُسقَط في الذاكرة لسطح المكتب؛ الكاتب ينشئه بالحجم الكامل، القارئ يفتحه للقراءة فقط
+     */
+    public static ByteBuffer mapFile(File file, int capacity, boolean writable) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, writable ? "rw" : "r")) {
+            long length = writable ? regionSize(capacity) : raf.length();
+            if (writable) raf.setLength(length);
+            MappedByteBuffer buffer = raf.getChannel().map(
+                writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY, 0, length
+            );
+            return buffer.order(ORDER);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.animedetector;
+
+import android.app.Service;
+import android.content.Intent;
+import android.os.IBinder;
+
+/**
+ * ✅ نقطة الربط المُصدَّرة الوحيدة: تسلّم Binder منطقة الكشوفات فقط.
+ * منفصلة عن OverlayService حتى لا يصل العملاء إلى onStartCommand ولا يُنشئ الربط الكاشف أو الالتقاط
+ */
+public class DetectionExportService extends Service {
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        if (!DetectionExport.ACTION_BIND.equals(intent.getAction())) return null;
+        return DetectionExport.getBinder();
+    }
+}
@@ -0,0 +1,36 @@
+package com.animedetector;
+
+/**
+ * ✅ صناديق معاد استخدامها لمسار الإطار المستقر: reset() في بداية الإطار ثم obtain() لكل صندوق.
+ * المصفوفة تكبر فقط حين يتجاوز إطارٌ أكبرَ عدد سابق، فالحالة المستقرة بلا تخصيص.
+ * كل صندوق أُخذ من المجمّع صالح حتى reset() التالي فقط
+ */
+public final class DetectionPool {
+    private Detection[] items;
+    private int used;
+
+    public DetectionPool(int initialCapacity) {
+        items = new Detection[Math.max(1, initialCapacity)];
+        for (int i = 0; i < items.length; i++) items[i] = new Detection(0f, 0f, 0f, 0f, 0f, 0);
+    }
+
+    public void reset() {
+        used = 0;
+    }
+
+    public Detection obtain(float x1, float y1, float x2, float y2, float conf, int cls) {
+        if (used == items.length) grow();
+        return items[used++].set(x1, y1, x2, y2, conf, cls);
+    }
+
+    public Detection copyOf(Detection det) {
+        return obtain(det.x1, det.y1, det.x2, det.y2, det.confidence, det.classId);
+    }
+
+    private void grow() {
+        Detection[] larger = new Detection[items.length * 2];
+        System.arraycopy(items, 0, larger, 0, items.length);
+        for (int i = items.length; i < larger.length; i++) larger[i] = new Detection(0f, 0f, 0f, 0f, 0f, 0);
+        items = larger;
+    }
+}
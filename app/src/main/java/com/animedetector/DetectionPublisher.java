@@ -0,0 +1,81 @@
+package com.animedetector;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * ✅ كاتب منطقة التصدير بـ seqlock: الكاتب لا ينتظر أي قارئ أبداً، والقارئ يعيد المحاولة إذا تغيّر العداد.
+ * كاتب واحد فقط (خيط الكشف)؛ الصناديق الزائدة عن السعة تُقتطع (الأعلى ثقة أولاً بعد NMS).
+ */
+public class DetectionPublisher {
+    private final ByteBuffer region;
+    private final int capacity;
+    private int sequence;
+    private long published;
+    private long truncated;
+
+    /**
+     * @param region منطقة مشتركة بحجم DetectionExportFormat.regionSize(capacity) على الأقل
+     * @throws IllegalStateException إذا لم تتوفر حواجز الذاكرة
+     */
+    public DetectionPublisher(ByteBuffer region, int capacity) {
+        DetectionExportFormat.requireFences();
+        if (region.capacity() < DetectionExportFormat.regionSize(capacity)) {
+            throw new IllegalArgumentException(
+                "Region too small: " + region.capacity() + " < " + DetectionExportFormat.regionSize(capacity)
+            );
+        }
+        this.region = region.duplicate().order(DetectionExportFormat.ORDER);
+        this.capacity = capacity;
+
+        this.region.putInt(DetectionExportFormat.OFFSET_SEQUENCE, 0);
+        this.region.putInt(DetectionExportFormat.OFFSET_COUNT, 0);
+        this.region.putInt(DetectionExportFormat.OFFSET_CAPACITY, capacity);
+        this.region.putInt(DetectionExportFormat.OFFSET_VERSION, DetectionExportFormat.VERSION);
+        DetectionExportFormat.storeFence();
+        // MAGIC آخراً: القارئ الذي يراه يرى رأساً مكتملاً
+        this.region.putInt(DetectionExportFormat.OFFSET_MAGIC, DetectionExportFormat.MAGIC);
+    }
+
+    public synchronized void publish(DetectionResult result, long frameIndex, long timestampNanos) {
+        List<Detection> detections = result.detections;
+        int count = Math.min(capacity, detections.size());
+        if (count < detections.size()) truncated++;
+
+        region.putInt(DetectionExportFormat.OFFSET_SEQUENCE, ++sequence);
+        DetectionExportFormat.storeFence();
+
+        region.putLong(DetectionExportFormat.OFFSET_TIMESTAMP, timestampNanos);
+        region.putLong(DetectionExportFormat.OFFSET_FRAME_INDEX, frameIndex);
+        region.putInt(DetectionExportFormat.OFFSET_WIDTH, result.imageWidth);
+        region.putInt(DetectionExportFormat.OFFSET_HEIGHT, result.imageHeight);
+        region.putInt(DetectionExportFormat.OFFSET_COUNT, count);
+
+        for (int i = 0; i < count; i++) {
+            Detection det = detections.get(i);
+            int offset = DetectionExportFormat.boxOffset(i);
+            region.putFloat(offset, det.x1);
+            region.putFloat(offset + 4, det.y1);
+            region.putFloat(offset + 8, det.x2);
+            region.putFloat(offset + 12, det.y2);
+            region.putFloat(offset + 16, det.confidence);
+            region.putInt(offset + 20, det.classId);
+        }
+
+        DetectionExportFormat.storeFence();
+        region.putInt(DetectionExportFormat.OFFSET_SEQUENCE, ++sequence);
+        published++;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public synchronized long getPublished() {
+        return published;
+    }
+
+    public synchronized long getTruncated() {
+        return truncated;
+    }
+}
@@ -0,0 +1,125 @@
+package com.animedetector;
+
+import java.nio.ByteBuffer;
+
+/**
+ * ✅ مكتبة القراءة لمنطقة التصدير: قراءة بلا أقفال ولا تخصيصات في الحالة المستقرة.
+ * تعمل على أي ByteBuffer: SharedMemory.mapReadOnly على الجهاز أو DetectionExportFormat.mapFile على سطح المكتب.
+ */
+public class DetectionReader {
+    private static final int MAX_ATTEMPTS = 16;
+
+    /**
+     * نسخة متسقة من إطار واحد؛ تُعاد استخدامها بين القراءات
+     */
+    public static final class Snapshot {
+        public long sequence;
+        public long frameIndex;
+        public long timestampNanos;
+        public int imageWidth;
+        public int imageHeight;
+        public int count;
+        /** x1, y1, x2, y2, confidence, classId لكل صندوق */
+        public float[] boxes;
+
+        public Snapshot(int capacity) {
+            boxes = new float[capacity * 6];
+        }
+
+        public int classId(int index) {
+            return (int) boxes[index * 6 + 5];
+        }
+    }
+
+    private final ByteBuffer region;
+    private final int capacity;
+    private int lastSequence = -1;
+    private long retries;
+
+    /**
+     * @throws IllegalStateException إذا لم تتوفر حواجز الذاكرة (لا قراءة متسقة بدونها)
+     */
+    public DetectionReader(ByteBuffer region) {
+        DetectionExportFormat.requireFences();
+        this.region = region.duplicate().order(DetectionExportFormat.ORDER);
+
+        if (this.region.capacity() < DetectionExportFormat.HEADER_SIZE ||
+            this.region.getInt(DetectionExportFormat.OFFSET_MAGIC) != DetectionExportFormat.MAGIC) {
+            throw new IllegalArgumentException("Not a detection export region");
+        }
+        DetectionExportFormat.loadFence();
+
+        int version = this.region.getInt(DetectionExportFormat.OFFSET_VERSION);
+        if (version != DetectionExportFormat.VERSION) {
+            throw new IllegalArgumentException("Unsupported export version " + version);
+        }
+        this.capacity = this.region.getInt(DetectionExportFormat.OFFSET_CAPACITY);
+        if (this.region.capacity() < DetectionExportFormat.regionSize(capacity)) {
+            throw new IllegalArgumentException("Region truncated for capacity " + capacity);
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public Snapshot newSnapshot() {
+        return new Snapshot(capacity);
+    }
+
+    /**
+     * هل نشر الكاتب إطاراً لم يُقرأ بعد (بدون نسخ)
+     */
+    public boolean hasUpdate() {
+        return region.getInt(DetectionExportFormat.OFFSET_SEQUENCE) != lastSequence;
+    }
+
+    /**
+     * يملأ into بآخر إطار منشور. false إذا بقي الكاتب في منتصف الكتابة بعد عدة محاولات
+     * (نادر جداً: الكتابة أقصر بكثير من فترة الإطار)؛ into عندها لا يُعتمد عليه.
+     */
+    public boolean read(Snapshot into) {
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            int before = region.getInt(DetectionExportFormat.OFFSET_SEQUENCE);
+            if ((before & 1) != 0) {
+                retries++;
+                Thread.yield();
+                continue;
+            }
+            DetectionExportFormat.loadFence();
+
+            into.timestampNanos = region.getLong(DetectionExportFormat.OFFSET_TIMESTAMP);
+            into.frameIndex = region.getLong(DetectionExportFormat.OFFSET_FRAME_INDEX);
+            into.imageWidth = region.getInt(DetectionExportFormat.OFFSET_WIDTH);
+            into.imageHeight = region.getInt(DetectionExportFormat.OFFSET_HEIGHT);
+            int count = Math.max(0, Math.min(capacity, region.getInt(DetectionExportFormat.OFFSET_COUNT)));
+
+            if (into.boxes.length < count * 6) into.boxes = new float[capacity * 6];
+            for (int i = 0; i < count; i++) {
+                int offset = DetectionExportFormat.boxOffset(i);
+                int base = i * 6;
+                into.boxes[base] = region.getFloat(offset);
+                into.boxes[base + 1] = region.getFloat(offset + 4);
+                into.boxes[base + 2] = region.getFloat(offset + 8);
+                into.boxes[base + 3] = region.getFloat(offset + 12);
+                into.boxes[base + 4] = region.getFloat(offset + 16);
+                into.boxes[base + 5] = region.getInt(offset + 20);
+            }
+
+            DetectionExportFormat.loadFence();
+            int after = region.getInt(DetectionExportFormat.OFFSET_SEQUENCE);
+            if (before == after) {
+                into.count = count;
+                into.sequence = before & 0xFFFFFFFFL;
+                lastSequence = before;
+                return true;
+            }
+            retries++;
+        }
+        return false;
+    }
+
+    public long getRetries() {
+        return retries;
+    }
+}
@@ -0,0 +1,52 @@
+package com.animedetector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ✅ كشوفات إطار واحد مع أبعاد الصورة التي قيست عليها.
+ * نتيجة يملكها مسار مستقر (المنعّم، خط سطح المكتب) تُعاد تعبئة قائمتها ثم refresh() بدل إنشاء نتيجة جديدة
+ */
+public class DetectionResult {
+    public final List<Detection> detections;
+    public float avgConfidence;
+    public int imageWidth;
+    public int imageHeight;
+
+    public DetectionResult(List<Detection> detections, int width, int height) {
+        this.detections = detections;
+        refresh(width, height);
+    }
+
+    /**
+     * بعد تعديل detections في المكان: الأبعاد ومتوسط الثقة من المحتوى الحالي
+     */
+    public DetectionResult refresh(int width, int height) {
+        this.imageWidth = width;
+        this.imageHeight = height;
+        this.avgConfidence = calculateAvgConfidence(detections);
+        return this;
+    }
+
+    private static float calculateAvgConfidence(List<Detection> detections) {
+        int n = detections.size();
+        if (n == 0) return 0f;
+        float sum = 0f;
+        for (int i = 0; i < n; i++) sum += detections.get(i).confidence;
+        return sum / n;
+    }
+
+    /**
+     * إزاحة النتيجة بمقدار التمرير مع قص الصناديق عند حواف الشاشة
+     */
+    public DetectionResult translate(float dx, float dy) {
+        List<Detection> moved = new ArrayList<>(detections.size());
+
+        for (Detection det : detections) {
+            Detection shifted = det.translate(dx, dy, imageWidth, imageHeight);
+            if (shifted != null) moved.add(shifted);
+        }
+
+        return new DetectionResult(moved, imageWidth, imageHeight);
+    }
+}
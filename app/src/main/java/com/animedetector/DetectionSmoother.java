@@ -1,94 +1,186 @@
 package com.animedetector;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
-import java.util.Queue;
 
+/**
+ * ✅ السجل نسخ يملكها المنعّم في حلقة ثابتة، والناتج من حلقة نتائج خاصة به: الحالة المستقرة بلا تخصيص.
+ * نتيجة smooth() صالحة حتى استدعاءين لاحقين (OUTPUT_SLOTS)؛ من يحتفظ بها أطول ينسخها
+ */
 public class DetectionSmoother {
+    private static final int OUTPUT_SLOTS = 2;
+    private static final int INITIAL_BOXES = 32;
+    
     private final int windowSize;
-    private final Queue<OptimizedAnimeDetector.DetectionResult> history;
+    private final DetectionResult[] history;
+    private final DetectionPool[] historyPools;
+    private int historyHead;
+    private int historyCount;
+    private final DetectionResult[] outputs = new DetectionResult[OUTPUT_SLOTS];
+    private final DetectionPool[] outputPools = new DetectionPool[OUTPUT_SLOTS];
+    private int nextOutput;
     private final float POSITION_THRESHOLD_SQ = 50f * 50f;
     
     private static final int GRID_SIZE = 32;
-    private final Map<Integer, List<OptimizedAnimeDetector.Detection>> spatialGrid;
-    private final List<OptimizedAnimeDetector.Detection> reusableList;
+    private static final int CELLS = GRID_SIZE * GRID_SIZE;
+    private final List<Detection> reusableList;
+    
+    // ✅ الشبكة المكانية كأعمدة مرتبة حسب الخلية (ترتيب ثابت داخل كل خلية):
+    // مسح خلية = مقطع متصل [cellStart[key], cellStart[key + 1]) تمر عليه حلقة المسافة المتجهة
+    private final int[] cellStart = new int[CELLS + 1];
+    private final int[] cellCursor = new int[CELLS];
+    private int[] cellOf = new int[0];
+    private Detection[] gridDetections = new Detection[0];
+    private float[] gridCenterX = new float[0];
+    private float[] gridCenterY = new float[0];
+    private int[] gridClass = new int[0];
+    private final int[] matches;
+    private final ArrayKernels kernels = Kernels.get();
     
     public DetectionSmoother(int windowSize) {
-        this.windowSize = windowSize;
-        this.history = new LinkedList<>();
-        this.spatialGrid = new HashMap<>();
+        this.windowSize = Math.max(1, windowSize);
+        this.history = new DetectionResult[this.windowSize];
+        this.historyPools = new DetectionPool[this.windowSize];
+        for (int i = 0; i < this.windowSize; i++) {
+            history[i] = new DetectionResult(new ArrayList<Detection>(INITIAL_BOXES), 0, 0);
+            historyPools[i] = new DetectionPool(INITIAL_BOXES);
+        }
+        for (int i = 0; i < OUTPUT_SLOTS; i++) {
+            outputs[i] = new DetectionResult(new ArrayList<Detection>(INITIAL_BOXES), 0, 0);
+            outputPools[i] = new DetectionPool(INITIAL_BOXES);
+        }
         this.reusableList = new ArrayList<>();
+        this.matches = new int[this.windowSize];
     }
     
-    public synchronized OptimizedAnimeDetector.DetectionResult smooth(
-            OptimizedAnimeDetector.DetectionResult newResult) {
+    /**
+     * المدخل يبقى ملكاً للمستدعي (يُنسخ إلى السجل) فيمكنه إعادة استخدامه في الإطار التالي
+     */
+    public synchronized DetectionResult smooth(
+            DetectionResult newResult) {
         
-        history.offer(newResult);
+        DetectionResult latest = record(newResult);
         
-        while (history.size() > windowSize) {
-            history.poll();
-        }
-        
-        if (history.size() < 2) {
+        if (historyCount < 2) {
             return newResult;
         }
         
-        List<OptimizedAnimeDetector.Detection> smoothed = mergeDetections(newResult);
+        DetectionResult output = outputs[nextOutput];
+        DetectionPool pool = outputPools[nextOutput];
+        nextOutput = (nextOutput + 1) % OUTPUT_SLOTS;
         
-        return new OptimizedAnimeDetector.DetectionResult(
-            smoothed, newResult.imageWidth, newResult.imageHeight
-        );
+        pool.reset();
+        mergeDetections(latest, pool, output.detections);
+        return output.refresh(latest.imageWidth, latest.imageHeight);
     }
     
-    private List<OptimizedAnimeDetector.Detection> mergeDetections(
-            OptimizedAnimeDetector.DetectionResult latest) {
+    /**
+     * نسخ المدخل إلى خانة الأقدم في الحلقة (أو خانة جديدة قبل امتلائها)
+     */
+    private DetectionResult record(DetectionResult source) {
+        int slot;
+        if (historyCount < windowSize) {
+            slot = (historyHead + historyCount) % windowSize;
+            historyCount++;
+        } else {
+            slot = historyHead;
+            historyHead = (historyHead + 1) % windowSize;
+        }
         
-        List<OptimizedAnimeDetector.Detection> merged = new ArrayList<>();
+        DetectionResult copy = history[slot];
+        DetectionPool pool = historyPools[slot];
+        pool.reset();
+        copy.detections.clear();
+        for (int i = 0; i < source.detections.size(); i++) {
+            copy.detections.add(pool.copyOf(source.detections.get(i)));
+        }
+        return copy.refresh(source.imageWidth, source.imageHeight);
+    }
+    
+    private DetectionResult historyAt(int index) {
+        return history[(historyHead + index) % windowSize];
+    }
+    
+    private void mergeDetections(
+            DetectionResult latest, DetectionPool pool, List<Detection> merged) {
+        
+        merged.clear();
         
         buildSpatialGrid(latest.imageWidth, latest.imageHeight);
         
         int minOccurrences = Math.max(1, windowSize / 2);
         
-        for (OptimizedAnimeDetector.Detection current : latest.detections) {
+        for (int i = 0; i < latest.detections.size(); i++) {
+            Detection current = latest.detections.get(i);
             reusableList.clear();
             findSimilarInGrid(current, latest, reusableList);
             
             if (reusableList.size() >= minOccurrences) {
-                merged.add(averageDetections(reusableList));
+                merged.add(averageDetections(reusableList, pool));
             } else if (current.confidence > 0.5f) {
-                merged.add(current);
+                merged.add(pool.copyOf(current));
             }
         }
-        
-        return merged;
     }
     
     private void buildSpatialGrid(int imageWidth, int imageHeight) {
-        spatialGrid.clear();
-        
         float cellWidth = (float) imageWidth / GRID_SIZE;
         float cellHeight = (float) imageHeight / GRID_SIZE;
         
-        for (OptimizedAnimeDetector.DetectionResult result : history) {
-            for (OptimizedAnimeDetector.Detection det : result.detections) {
+        int total = 0;
+        for (int h = 0; h < historyCount; h++) total += historyAt(h).detections.size();
+        ensureGridCapacity(total);
+        
+        // عدّ ثم توزيع (counting sort مستقر): نفس ترتيب الإدراج السابق داخل كل خلية
+        for (int k = 0; k <= CELLS; k++) cellStart[k] = 0;
+        int n = 0;
+        for (int h = 0; h < historyCount; h++) {
+            List<Detection> detections = historyAt(h).detections;
+            for (int i = 0; i < detections.size(); i++) {
+                Detection det = detections.get(i);
                 int gridX = Math.max(0, Math.min(GRID_SIZE - 1, 
                     (int) (det.centerX / cellWidth)));
                 int gridY = Math.max(0, Math.min(GRID_SIZE - 1, 
                     (int) (det.centerY / cellHeight)));
                 
                 int key = gridY * GRID_SIZE + gridX;
-                spatialGrid.computeIfAbsent(key, k -> new ArrayList<>()).add(det);
+                cellOf[n++] = key;
+                cellStart[key + 1]++;
+            }
+        }
+        for (int k = 0; k < CELLS; k++) {
+            cellStart[k + 1] += cellStart[k];
+            cellCursor[k] = cellStart[k];
+        }
+        
+        n = 0;
+        for (int h = 0; h < historyCount; h++) {
+            List<Detection> detections = historyAt(h).detections;
+            for (int i = 0; i < detections.size(); i++) {
+                Detection det = detections.get(i);
+                int slot = cellCursor[cellOf[n++]]++;
+                gridDetections[slot] = det;
+                gridCenterX[slot] = det.centerX;
+                gridCenterY[slot] = det.centerY;
+                gridClass[slot] = det.classId;
             }
         }
     }
     
+    private void ensureGridCapacity(int total) {
+        if (gridDetections.length >= total) return;
+        int capacity = Math.max(total, gridDetections.length * 2);
+        cellOf = new int[capacity];
+        gridDetections = new Detection[capacity];
+        gridCenterX = new float[capacity];
+        gridCenterY = new float[capacity];
+        gridClass = new int[capacity];
+    }
+    
     private void findSimilarInGrid(
-            OptimizedAnimeDetector.Detection target,
-            OptimizedAnimeDetector.DetectionResult latest,
-            List<OptimizedAnimeDetector.Detection> output) {
+            Detection target,
+            DetectionResult latest,
+            List<Detection> output) {
         
         output.add(target);
         
@@ -108,31 +200,32 @@ public class DetectionSmoother {
                 if (nx < 0 || nx >= GRID_SIZE || ny < 0 || ny >= GRID_SIZE) continue;
                 
                 int key = ny * GRID_SIZE + nx;
-                List<OptimizedAnimeDetector.Detection> cell = spatialGrid.get(key);
+                int from = cellStart[key];
+                int to = cellStart[key + 1];
                 
-                if (cell == null) continue;
+                if (from == to) continue;
                 
-                for (OptimizedAnimeDetector.Detection candidate : cell) {
-                    float dx2 = candidate.centerX - target.centerX;
-                    float dy2 = candidate.centerY - target.centerY;
-                    float distSq = dx2 * dx2 + dy2 * dy2;
-                    
-                    if (distSq < POSITION_THRESHOLD_SQ) {
-                        output.add(candidate);
-                        if (output.size() >= windowSize) return;
-                    }
-                }
+                // يُضاف مرشح واحد على الأقل حتى لو امتلأت النافذة، كما في المسح الأصلي
+                int found = kernels.selectWithin(
+                    gridCenterX, gridCenterY, gridClass, from, to,
+                    target.centerX, target.centerY, target.classId, POSITION_THRESHOLD_SQ,
+                    matches, Math.max(1, windowSize - output.size())
+                );
+                for (int m = 0; m < found; m++) output.add(gridDetections[matches[m]]);
+                
+                if (found > 0 && output.size() >= windowSize) return;
             }
         }
     }
     
-    private OptimizedAnimeDetector.Detection averageDetections(
-            List<OptimizedAnimeDetector.Detection> detections) {
+    private Detection averageDetections(
+            List<Detection> detections, DetectionPool pool) {
         
         float x1 = 0, y1 = 0, x2 = 0, y2 = 0, conf = 0;
         float invCount = 1.0f / detections.size();
         
-        for (OptimizedAnimeDetector.Detection det : detections) {
+        for (int i = 0; i < detections.size(); i++) {
+            Detection det = detections.get(i);
             x1 += det.x1;
             y1 += det.y1;
             x2 += det.x2;
@@ -140,16 +233,36 @@ public class DetectionSmoother {
             conf += det.confidence;
         }
         
-        return new OptimizedAnimeDetector.Detection(
+        return pool.obtain(
             x1 * invCount, y1 * invCount,
             x2 * invCount, y2 * invCount,
-            conf * invCount, 0
+            conf * invCount, detections.get(0).classId
         );
     }
     
+    /**
+     * إزاحة السجل بالكامل عند التمرير حتى لا يسحب التنعيم الصناديق إلى مواقعها القديمة
+     */
+    public synchronized void shift(float dx, float dy) {
+        for (int h = 0; h < historyCount; h++) {
+            DetectionResult result = historyAt(h);
+            List<Detection> detections = result.detections;
+            int kept = 0;
+            for (int i = 0; i < detections.size(); i++) {
+                Detection det = detections.get(i);
+                if (det.translateInPlace(dx, dy, result.imageWidth, result.imageHeight)) {
+                    detections.set(kept++, det);
+                }
+            }
+            while (detections.size() > kept) detections.remove(detections.size() - 1);
+            result.refresh(result.imageWidth, result.imageHeight);
+        }
+    }
+    
     public synchronized void clear() {
-        history.clear();
-        spatialGrid.clear();
+        historyHead = 0;
+        historyCount = 0;
+        for (int k = 0; k < gridDetections.length; k++) gridDetections[k] = null;
     }
 }
 
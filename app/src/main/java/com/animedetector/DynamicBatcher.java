@@ -0,0 +1,174 @@
+package com.animedetector;
+
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ✅ تجميع الإطارات في دفعات لـ detectBatch: تُرسل الدفعة عند بلوغ الحجم الأقصى أو انتهاء المهلة
+ * منذ أول إطار فيها. للفحص دون اتصال وإعادة التشغيل؛ الـ overlay الحي يبقى على detect
+ */
+public class DynamicBatcher {
+    private static final String TAG = "DynamicBatcher";
+
+    public interface Callback {
+        /**
+         * يُستدعى على خيط المجمّع لكل إطار بالترتيب؛ الإطار يبقى ملكاً للمستدعي
+         */
+        void onResult(Bitmap frame, DetectionResult result);
+    }
+
+    private static final class Pending {
+        final Bitmap frame;
+        final Callback callback;
+
+        Pending(Bitmap frame, Callback callback) {
+            this.frame = frame;
+            this.callback = callback;
+        }
+    }
+
+    private static final Pending FLUSH = new Pending(null, null);
+    private static final Pending STOP = new Pending(null, null);
+
+    private final OptimizedAnimeDetector detector;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final BlockingQueue<Pending> queue;
+    private final Thread worker;
+
+    private final List<Pending> batch = new ArrayList<>();
+    private final List<Bitmap> frames = new ArrayList<>();
+
+    private long batches;
+    private long frameCount;
+    private long deadlineBatches;
+
+    /**
+     * @param maxDelayMillis أقصى انتظار لاكتمال الدفعة بعد وصول أول إطار فيها
+     */
+    public DynamicBatcher(OptimizedAnimeDetector detector, int maxBatchSize, long maxDelayMillis) {
+        this.detector = detector;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+        // ضغط عكسي: submit ينتظر إذا تراكمت أكثر من أربع دفعات
+        this.queue = new LinkedBlockingQueue<>(this.maxBatchSize * 4);
+        this.worker = new Thread(this::loop, "BatchWorker");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * يضيف إطاراً؛ ينتظر إذا كان الطابور ممتلئاً
+     */
+    public void submit(Bitmap frame, Callback callback) throws InterruptedException {
+        queue.put(new Pending(frame, callback));
+    }
+
+    /**
+     * إرسال الدفعة الجارية فوراً دون انتظار المهلة (نهاية حلقة مثلاً)
+     */
+    public void flush() throws InterruptedException {
+        queue.put(FLUSH);
+    }
+
+    /**
+     * يعالج ما في الطابور ثم يوقف الخيط ويحرر مخزن الدفعات في الكاشف
+     */
+    public void shutdown() throws InterruptedException {
+        queue.put(STOP);
+        worker.join();
+        detector.releaseBatchBuffers();
+    }
+
+    private void loop() {
+        try {
+            while (true) {
+                Pending first = queue.take();
+                if (first == STOP) return;
+                if (first == FLUSH) continue;
+                batch.add(first);
+
+                boolean stop = false;
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    Pending next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        synchronized (this) {
+                            deadlineBatches++;
+                        }
+                        break;
+                    }
+                    if (next == FLUSH) break;
+                    if (next == STOP) {
+                        stop = true;
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                dispatch();
+                if (stop) return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void dispatch() {
+        try {
+            frames.clear();
+            for (Pending p : batch) frames.add(p.frame);
+
+            // فشل الدفعة (الكاشف مغلق مثلاً) لا يقتل الخيط: كل إطار يستلم نتيجة فارغة
+            // وإلا بقي المستدعون ينتظرون في submit على طابور لا يُفرَّغ
+            List<DetectionResult> results;
+            try {
+                results = detector.detectBatch(frames);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Batch detection failed", e);
+                results = null;
+            }
+
+            for (int i = 0; i < batch.size(); i++) {
+                Pending p = batch.get(i);
+                DetectionResult result = results != null ? results.get(i)
+                    : new DetectionResult(new ArrayList<>(), p.frame.getWidth(), p.frame.getHeight());
+                try {
+                    p.callback.onResult(p.frame, result);
+                } catch (RuntimeException e) {
+                    Log.e(TAG, "Batch callback failed", e);
+                }
+            }
+
+            synchronized (this) {
+                batches++;
+                frameCount += batch.size();
+            }
+        } finally {
+            batch.clear();
+            frames.clear();
+        }
+    }
+
+    public synchronized float getAvgBatchSize() {
+        return batches == 0 ? 0f : (float) frameCount / batches;
+    }
+
+    /**
+     * دفعات أُرسلت بسبب المهلة قبل أن تمتلئ
+     */
+    public synchronized long getDeadlineBatches() {
+        return deadlineBatches;
+    }
+
+    public synchronized long getBatches() {
+        return batches;
+    }
+}
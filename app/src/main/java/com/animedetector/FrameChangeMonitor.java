@@ -0,0 +1,93 @@
+package com.animedetector;
+
+import java.nio.ByteBuffer;
+
+/**
+ * ✅ بصمة سطوع رخيصة (شبكة 16×16 من بكسلات RGBA) تُقرأ مباشرة من مستوى Image على خيط الالتقاط،
+ * لمعرفة إن كان الإطار الجديد مختلفاً بما يكفي لإلغاء الاستدلال الجاري على الإطار السابق
+ */
+public class FrameChangeMonitor {
+    private static final int GRID = 16;
+
+    private final int[] processing = new int[GRID * GRID];
+    private final int[] latest = new int[GRID * GRID];
+    private final float threshold;
+    private boolean hasProcessing;
+
+    /**
+     * @param threshold متوسط فرق السطوع (0-255) الذي يُعتبر عنده الإطار مشهداً جديداً
+     */
+    public FrameChangeMonitor(float threshold) {
+        this.threshold = threshold;
+    }
+
+    /**
+     * تسجيل بصمة الإطار الذي يبدأ عليه الاستدلال الآن
+     */
+    public synchronized void markProcessing(ByteBuffer pixels, int rowStride, int pixelStride,
+                                            int width, int height) {
+        sample(pixels, rowStride, pixelStride, width, height, GRID, processing);
+        hasProcessing = true;
+    }
+
+    public synchronized void clear() {
+        hasProcessing = false;
+    }
+
+    public synchronized boolean differsFromProcessing(ByteBuffer pixels, int rowStride, int pixelStride,
+                                                      int width, int height) {
+        if (!hasProcessing) return false;
+
+        sample(pixels, rowStride, pixelStride, width, height, GRID, latest);
+
+        long diff = 0;
+        for (int i = 0; i < latest.length; i++) diff += Math.abs(latest[i] - processing[i]);
+        return diff > threshold * latest.length;
+    }
+
+    /**
+     * سطوع مركز كل خلية في شبكة grid×grid
+     */
+    static void sample(ByteBuffer pixels, int rowStride, int pixelStride,
+                       int width, int height, int grid, int[] out) {
+        for (int gy = 0; gy < grid; gy++) {
+            int y = (2 * gy + 1) * height / (2 * grid);
+            for (int gx = 0; gx < grid; gx++) {
+                int x = (2 * gx + 1) * width / (2 * grid);
+                int offset = y * rowStride + x * pixelStride;
+                int r = pixels.get(offset) & 0xFF;
+                int g = pixels.get(offset + 1) & 0xFF;
+                int b = pixels.get(offset + 2) & 0xFF;
+                out[gy * grid + gx] = (r * 77 + g * 150 + b * 29) >> 8;
+            }
+        }
+    }
+
+    /**
+     * متوسط سطوع كل خلية من samples×samples نقطة موزعة بخطوة منتظمة داخلها: تغيّر صغير
+     * خارج مركز الخلية يحرّك المتوسط بدل أن يضيع بين نقطتي عيّنة (يستخدمها CadenceEstimator)
+     */
+    static void sampleMeans(ByteBuffer pixels, int rowStride, int pixelStride,
+                            int width, int height, int grid, int samples, int[] out) {
+        int span = grid * samples;
+        int count = samples * samples;
+        for (int gy = 0; gy < grid; gy++) {
+            for (int gx = 0; gx < grid; gx++) {
+                int sum = 0;
+                for (int sy = 0; sy < samples; sy++) {
+                    int y = (2 * (gy * samples + sy) + 1) * height / (2 * span);
+                    int row = y * rowStride;
+                    for (int sx = 0; sx < samples; sx++) {
+                        int x = (2 * (gx * samples + sx) + 1) * width / (2 * span);
+                        int offset = row + x * pixelStride;
+                        int r = pixels.get(offset) & 0xFF;
+                        int g = pixels.get(offset + 1) & 0xFF;
+                        int b = pixels.get(offset + 2) & 0xFF;
+                        sum += (r * 77 + g * 150 + b * 29) >> 8;
+                    }
+                }
+                out[gy * grid + gx] = (sum + count / 2) / count;
+            }
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.animedetector;
+
+/**
+ * ✅ الاستدلال الجاري أُنهي عبر RunOptions لأن إطاراً أحدث ومختلفاً وصل؛ لا نتيجة لهذا الإطار
+ */
+public class InferenceCancelledException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public InferenceCancelledException() {
+        super("Inference cancelled for a newer frame");
+    }
+}
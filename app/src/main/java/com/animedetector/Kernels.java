@@ -0,0 +1,37 @@
+package com.animedetector;
+
+/**
+ * ✅ اختيار تنفيذ ArrayKernels مرة واحدة وقت التشغيل: نسخة Vector API إذا كانت موجودة على مسار
+ * الأصناف ووحدة jdk.incubator.vector محمّلة (سطح المكتب)، وإلا العددي (Android دائماً).
+ * -Danimedetector.kernels=scalar يفرض العددي للمقارنة.
+ */
+public final class Kernels {
+    private static final String VECTOR_IMPL = "com.animedetector.perf.VectorKernels";
+
+    private static volatile ArrayKernels active;
+
+    private Kernels() {
+    }
+
+    public static ArrayKernels get() {
+        ArrayKernels kernels = active;
+        if (kernels == null) {
+            synchronized (Kernels.class) {
+                if (active == null) active = select();
+                kernels = active;
+            }
+        }
+        return kernels;
+    }
+
+    private static ArrayKernels select() {
+        if ("scalar".equals(System.getProperty("animedetector.kernels"))) return ScalarKernels.INSTANCE;
+
+        try {
+            return (ArrayKernels) Class.forName(VECTOR_IMPL).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError | ClassCastException e) {
+            // Android، أو سطح المكتب بدون --add-modules jdk.incubator.vector
+            return ScalarKernels.INSTANCE;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.animedetector;
+
+import android.content.ComponentCallbacks2;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ✅ محاسبة الذاكرة الكبيرة التي يملكها خط المعالجة، وتخفيض الجودة تدريجياً بدل أن يقتل النظام الخدمة
+ */
+public class MemoryBudget {
+    public static final int LEVEL_NORMAL = 0;
+    public static final int LEVEL_RELEASE_CACHES = 1;
+    public static final int LEVEL_REDUCED = 2;
+    public static final int LEVEL_MINIMAL = 3;
+
+    private static final long RECOVERY_INTERVAL_MS = 60_000;
+    // مهلة بين تصعيدين: تغيير الدقة والمخازن يطبَّق على الإطارات التالية لا فوراً
+    private static final long ESCALATION_INTERVAL_MS = 1_000;
+    // هامش الرجوع: لا نرجع مستوى إلا تحت 80% من الميزانية حتى لا يعيدنا حجم المستوى الأعلى فوقها
+    private static final float RECOVERY_HEADROOM = 0.8f;
+
+    public interface Listener {
+        /**
+         * يُستدعى عند تغيّر مستوى التخفيض، استدعاءً واحداً في كل مرة وبالمستوى الحالي؛ يطبّق المستمع إعداداته المناسبة له
+         */
+        void onDegradationLevel(int level);
+    }
+
+    private final Map<String, Long> tracked = new LinkedHashMap<>();
+    private final List<Listener> listeners = new ArrayList<>();
+    private volatile long budgetBytes;
+
+    // التطبيق مستوى بعد مستوى: onTrimMemory على الخيط الرئيسي وevaluate على خيط الكشف قد يتسابقان
+    private final Object notifyLock = new Object();
+    private int appliedLevel = LEVEL_NORMAL;
+
+    private int level = LEVEL_NORMAL;
+    private long lastPressureTime;
+    private long lastEscalationTime;
+    private long peakBytes;
+
+    public MemoryBudget(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+    }
+
+    public synchronized void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void setBudgetBytes(long bytes) {
+        budgetBytes = bytes;
+    }
+
+    /**
+     * تسجيل أو تحديث حجم مخزن باسمه؛ 0 يعني تحريره. القرار في evaluate() مرة لكل إطار لا هنا:
+     * الإطار الواحد يسجّل عدة مخازن، وتصعيد عند كل تسجيل يقفز من NORMAL إلى MINIMAL دفعة واحدة
+     */
+    public synchronized void track(String name, long bytes) {
+        if (bytes <= 0) tracked.remove(name);
+        else tracked.put(name, bytes);
+
+        peakBytes = Math.max(peakBytes, usedBytesLocked());
+    }
+
+    public void release(String name) {
+        track(name, 0);
+    }
+
+    public void onTrimMemory(int trimLevel) {
+        int target;
+        if (trimLevel >= ComponentCallbacks2.TRIM_MEMORY_COMPLETE ||
+            trimLevel == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            target = LEVEL_MINIMAL;
+        } else if (trimLevel >= ComponentCallbacks2.TRIM_MEMORY_MODERATE ||
+            trimLevel == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            target = LEVEL_REDUCED;
+        } else if (trimLevel == ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            // الـ overlay لا يزال ظاهراً؛ لا يوجد ما يُحرَّر بأمان هنا
+            return;
+        } else {
+            target = LEVEL_RELEASE_CACHES;
+        }
+        escalate(target);
+    }
+
+    /**
+     * يُستدعى مرة لكل إطار بعد تسجيل المخازن: فوق الميزانية نصعد مستوى واحداً على الأكثر
+     * (ومرة كل ESCALATION_INTERVAL_MS)، وبعد فترة هادئة تحت هامش الرجوع ننزل مستوى واحداً
+     */
+    public void evaluate() {
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            long used = usedBytesLocked();
+            if (used > budgetBytes) {
+                lastPressureTime = now;
+                if (level >= LEVEL_MINIMAL || now - lastEscalationTime < ESCALATION_INTERVAL_MS) return;
+                level++;
+                lastEscalationTime = now;
+            } else {
+                if (level == LEVEL_NORMAL) return;
+                if (now - lastPressureTime < RECOVERY_INTERVAL_MS) return;
+                if (used > budgetBytes * RECOVERY_HEADROOM) return;
+                lastPressureTime = now;
+                level--;
+            }
+        }
+        notifyListeners();
+    }
+
+    private void escalate(int target) {
+        synchronized (this) {
+            lastPressureTime = System.currentTimeMillis();
+            if (target <= level) return;
+            level = Math.min(LEVEL_MINIMAL, target);
+            lastEscalationTime = lastPressureTime;
+        }
+        notifyListeners();
+    }
+
+    /**
+     * يطبّق المستوى الحالي لا المستوى الذي حسبه المستدعي: من يدخل أخيراً يقرأ آخر مستوى مسجَّل،
+     * فما طُبّق في النهاية يطابق getLevel() مهما كان ترتيب الخيوط
+     */
+    private void notifyListeners() {
+        synchronized (notifyLock) {
+            int current;
+            List<Listener> snapshot;
+            synchronized (this) {
+                current = level;
+                snapshot = new ArrayList<>(listeners);
+            }
+            if (current == appliedLevel) return;
+            appliedLevel = current;
+            for (Listener listener : snapshot) listener.onDegradationLevel(current);
+        }
+    }
+
+    private long usedBytesLocked() {
+        long total = 0;
+        for (Long bytes : tracked.values()) total += bytes;
+        return total;
+    }
+
+    public synchronized long getUsedBytes() {
+        return usedBytesLocked();
+    }
+
+    public synchronized long getPeakBytes() {
+        return peakBytes;
+    }
+
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    public synchronized int getLevel() {
+        return level;
+    }
+
+    public synchronized String summary() {
+        return String.format("%.0f/%.0fMB L%d",
+            usedBytesLocked() / 1048576f, budgetBytes / 1048576f, level);
+    }
+}
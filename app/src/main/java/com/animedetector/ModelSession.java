@@ -0,0 +1,104 @@
+package com.animedetector;
+
+import ai.onnxruntime.NodeInfo;
+import ai.onnxruntime.OnnxJavaType;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import ai.onnxruntime.TensorInfo;
+
+/**
+ * ✅ جلسة ORT قابلة للتبديل مع عدّاد مراجع: الجلسة المستبدلة تُغلق فقط بعد انتهاء آخر تشغيل جارٍ عليها
+ */
+class ModelSession {
+    final String name;
+    final OrtSession session;
+    final String inputName;
+    final boolean packedInput;
+    final long[] inputShape;
+    final boolean dynamicBatch;
+
+    // مرجع واحد للمالك (الكاشف) + مرجع لكل تشغيل جارٍ
+    private int refs = 1;
+
+    /**
+     * @throws OrtException إذا كانت أبعاد الإدخال الثابتة لا تطابق inputSize (الجلسة تُغلق)
+     */
+    ModelSession(String name, OrtSession session, int inputSize) throws OrtException {
+        this.name = name;
+        this.session = session;
+        this.inputName = session.getInputNames().iterator().next();
+
+        try {
+            this.packedInput = isPackedRgbInput(session, inputName);
+            this.inputShape = packedInput
+                ? new long[] {1, inputSize, inputSize, 3}
+                : new long[] {1, 3, inputSize, inputSize};
+            checkInputSize(session, inputName, packedInput, inputSize);
+            this.dynamicBatch = hasDynamicBatch(session, inputName);
+        } catch (OrtException e) {
+            session.close();
+            throw e;
+        }
+    }
+
+    /**
+     * نموذج محوَّل بأداة ModelConverter: إدخال uint8 بشكل [1, H, W, 3] والتحويل والتطبيع داخل الرسم
+     */
+    private static boolean isPackedRgbInput(OrtSession session, String inputName) throws OrtException {
+        NodeInfo input = session.getInputInfo().get(inputName);
+        if (input == null || !(input.getInfo() instanceof TensorInfo)) return false;
+
+        TensorInfo info = (TensorInfo) input.getInfo();
+        long[] shape = info.getShape();
+        return info.type == OnnxJavaType.UINT8 && shape.length == 4 && shape[3] == 3;
+    }
+
+    /**
+     * بعد الدفعة الأول رمزي (-1 أو اسم) = يقبل N إطاراً في تشغيل واحد
+     */
+    private static boolean hasDynamicBatch(OrtSession session, String inputName) throws OrtException {
+        NodeInfo input = session.getInputInfo().get(inputName);
+        if (input == null || !(input.getInfo() instanceof TensorInfo)) return false;
+
+        long[] shape = ((TensorInfo) input.getInfo()).getShape();
+        return shape.length == 4 && shape[0] <= 0;
+    }
+
+    private static void checkInputSize(OrtSession session, String inputName, boolean packed, int inputSize)
+            throws OrtException {
+        NodeInfo input = session.getInputInfo().get(inputName);
+        if (input == null || !(input.getInfo() instanceof TensorInfo)) return;
+
+        long[] shape = ((TensorInfo) input.getInfo()).getShape();
+        if (shape.length != 4) return;
+        long h = packed ? shape[1] : shape[2];
+        long w = packed ? shape[2] : shape[3];
+        if ((h > 0 && h != inputSize) || (w > 0 && w != inputSize)) {
+            throw new OrtException("Model input " + w + "x" + h + " does not match " + inputSize);
+        }
+    }
+
+    /**
+     * false إذا أُغلقت الجلسة بالفعل (استُبدلت وانتهت تشغيلاتها)
+     */
+    synchronized boolean acquire() {
+        if (refs == 0) return false;
+        refs++;
+        return true;
+    }
+
+    void release() {
+        boolean close;
+        synchronized (this) {
+            if (refs == 0) return;
+            close = --refs == 0;
+        }
+        if (close) {
+            try {
+                session.close();
+            } catch (OrtException e) {
+                // الجلسة خارج الاستخدام على أي حال
+            }
+        }
+    }
+}
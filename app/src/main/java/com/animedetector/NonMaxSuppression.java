@@ -0,0 +1,105 @@
+package com.animedetector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ✅ NMS جشع مرتب بالثقة مع أعلام كبت معاد استخدامها؛ بدون اعتماد على Android
+ */
+public class NonMaxSuppression {
+    private final float iouThreshold;
+    private boolean[] suppressedFlags;
+    private volatile boolean classAware = true;
+
+    // الصناديق المرتبة كأعمدة (SoA) حتى تعمل حلقة IoU على مصفوفات متصلة
+    private float[] x1 = new float[0];
+    private float[] y1 = new float[0];
+    private float[] x2 = new float[0];
+    private float[] y2 = new float[0];
+    private float[] areas = new float[0];
+    private int[] classIds = new int[0];
+    private final ArrayKernels kernels = Kernels.get();
+
+    public NonMaxSuppression(float iouThreshold, int maxDetections) {
+        this.iouThreshold = iouThreshold;
+        this.suppressedFlags = new boolean[maxDetections];
+        ensureCapacity(maxDetections);
+    }
+
+    public void setClassAware(boolean enabled) {
+        classAware = enabled;
+    }
+
+    /**
+     * يرتب القائمة المعطاة في مكانها ويعيد الصناديق الناجية
+     */
+    public synchronized List<Detection> apply(List<Detection> detections) {
+        if (detections.isEmpty()) return detections;
+
+        List<Detection> result = new ArrayList<>();
+        apply(detections, result);
+        return result;
+    }
+
+    /**
+     * نفس apply بقائمة ناتج يملكها المستدعي (تُفرَّغ أولاً): بلا تخصيص في الحالة المستقرة
+     */
+    public synchronized void apply(List<Detection> detections, List<Detection> out) {
+        out.clear();
+        int n = detections.size();
+        if (n == 0) return;
+
+        sortByConfidence(detections);
+
+        ensureCapacity(n);
+        for (int i = 0; i < n; i++) {
+            Detection det = detections.get(i);
+            x1[i] = det.x1;
+            y1[i] = det.y1;
+            x2[i] = det.x2;
+            y2[i] = det.y2;
+            areas[i] = det.area;
+            classIds[i] = det.classId;
+            suppressedFlags[i] = false;
+        }
+
+        boolean perClass = classAware;
+
+        for (int i = 0; i < n; i++) {
+            if (suppressedFlags[i]) continue;
+
+            out.add(detections.get(i));
+            kernels.suppressOverlaps(
+                x1, y1, x2, y2, areas, classIds, suppressedFlags, i, n, iouThreshold, perClass
+            );
+        }
+    }
+
+    /**
+     * ترتيب إدراج مستقر تنازلياً بالثقة: نفس ترتيب Collections.sort السابق، لكن TimSort يخصّص
+     * مصفوفة مؤقتة فوق 32 عنصراً، والمرشحات محدودة بـ maxDetections
+     */
+    private static void sortByConfidence(List<Detection> detections) {
+        int n = detections.size();
+        for (int i = 1; i < n; i++) {
+            Detection key = detections.get(i);
+            int j = i - 1;
+            while (j >= 0 && detections.get(j).confidence < key.confidence) {
+                detections.set(j + 1, detections.get(j));
+                j--;
+            }
+            detections.set(j + 1, key);
+        }
+    }
+
+    private void ensureCapacity(int n) {
+        if (x1.length >= n) return;
+        x1 = new float[n];
+        y1 = new float[n];
+        x2 = new float[n];
+        y2 = new float[n];
+        areas = new float[n];
+        classIds = new int[n];
+        if (suppressedFlags.length < n) suppressedFlags = new boolean[n];
+    }
+}
@@ -2,128 +2,133 @@ package com.animedetector;
 
 import android.content.Context;
 import android.graphics.Bitmap;
+import android.graphics.Matrix;
+import android.graphics.Rect;
 import android.util.Log;
 
 import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.NodeInfo;
+import ai.onnxruntime.OnnxJavaType;
 import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
 import ai.onnxruntime.OrtSession;
+import ai.onnxruntime.TensorInfo;
 import ai.onnxruntime.providers.NNAPIFlags;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class OptimizedAnimeDetector {
     private static final String TAG = "AnimeDetector";
     private static final String MODEL_NAME = "anime_detector.onnx";
+    private static final String GATE_MODEL_NAME = "anime_presence.onnx";
+    private static final int GATE_INPUT_SIZE = 128;
+    private static final float GATE_THRESHOLD = 0.3f;
+    private static final PresenceGate.Output GATE_OUTPUT = PresenceGate.Output.LOGIT;
+    private static final int GATE_REFRESH_INTERVAL = 15;
     private static final int INPUT_SIZE = 640;
+    private static final int LETTERBOX_COLOR = 0xFF727272;
     private static final float CONF_THRESHOLD = 0.25f;
     private static final float IOU_THRESHOLD = 0.45f;
     private static final int MAX_DETECTIONS = 100;
+    private static final int WARMUP_RUNS = 2;
+    private static final int MAX_BATCH_SIZE = 8;
     
-    private final ByteBuffer directBuffer;
-    private final FloatBuffer floatView;
+    private static final int CACHE_MAX_ENTRIES = 64;
+    private static final long CACHE_MAX_BYTES = 256 * 1024;
+    private static final int CACHE_THUMB_SIZE = 16;
+    private static final int CACHE_MAX_CELL_DIFF = 8;
+    
+    // تخطيط الإدخال يتبع الجلسة الحالية؛ يتغير فقط تحت bufferLock عند التبديل
+    private ByteBuffer directBuffer;
+    private FloatBuffer floatView;
+    private boolean packedInput;
+    private long[] inputShape;
+    private final int[] pixelBuffer;
+    private final PreprocessKernel preprocessKernel;
     private final Object bufferLock = new Object();
     
-    private final float[] precomputedAreas;
-    private final boolean[] suppressedFlags;
+    // ✅ إنهاء الاستدلال المتقادم: RunOptions واحد يُعاد ضبطه قبل كل تشغيل
+    private final OrtSession.RunOptions runOptions;
+    private final Object runLock = new Object();
+    private boolean runInFlight;
+    private boolean cancelRequested;
+    private long cancelledRuns;
+    
+    private final NonMaxSuppression nms;
     
     private final OrtEnvironment env;
-    private final OrtSession session;
-    private final String inputName;
+    
+    // ✅ تبديل ساخن للنموذج: البديل يُبنى ويُسخَّن في الخلفية ثم يُركَّب بين إطارين
+    private volatile ModelSession current;
+    private final Object swapLock = new Object();
+    private ModelSession pending;
+    private boolean closed;
+    private long swaps;
+    
+    private YoloDecoder decoder;
+    private final Map<Integer, Float> classThresholds = new HashMap<>();
+    private float[] outputData = new float[0];
+    
+    private final DetectionCache resultCache;
+    private final PresenceGate presenceGate;
+    private volatile boolean cascadeEnabled = true;
     
     private volatile float adaptiveConfThreshold = CONF_THRESHOLD;
     
-    public static class Detection {
-        public final float x1, y1, x2, y2;
-        public final float width, height;
-        public final float confidence;
-        public final int classId;
-        public final float centerX, centerY;
-        public final float area;
-        
-        public Detection(float x1, float y1, float x2, float y2, float conf, int cls) {
-            this.x1 = x1;
-            this.y1 = y1;
-            this.x2 = x2;
-            this.y2 = y2;
-            this.width = x2 - x1;
-            this.height = y2 - y1;
-            this.confidence = conf;
-            this.classId = cls;
-            this.centerX = (x1 + x2) * 0.5f;
-            this.centerY = (y1 + y2) * 0.5f;
-            this.area = width * height;
-        }
-    }
-    
-    public static class DetectionResult {
-        public final List<Detection> detections;
-        public final float avgConfidence;
-        public final int imageWidth;
-        public final int imageHeight;
-        
-        public DetectionResult(List<Detection> detections, int width, int height) {
-            this.detections = detections;
-            this.imageWidth = width;
-            this.imageHeight = height;
-            this.avgConfidence = calculateAvgConfidence(detections);
-        }
-        
-        private float calculateAvgConfidence(List<Detection> detections) {
-            if (detections.isEmpty()) return 0f;
-            float sum = 0f;
-            for (Detection d : detections) sum += d.confidence;
-            return sum / detections.size();
-        }
-    }
+    // ✅ مسار الدفعات: مخزن إدخال/إخراج ومفكك منفصلة عن مسار الإطار الواحد (تحت bufferLock)
+    private ByteBuffer batchBuffer;
+    private float[] batchOutput = new float[0];
+    private YoloDecoder batchDecoder;
+    private long batchRuns;
+    private long batchFrames;
     
     public OptimizedAnimeDetector(Context context) {
+        this(context, MODEL_NAME, GATE_MODEL_NAME);
+    }
+    
+    /**
+     * @param gateModelName نموذج مرحلة الحضور (128×128)؛ null أو أصل غير موجود = بدون cascade
+     */
+    public OptimizedAnimeDetector(Context context, String modelName, String gateModelName) {
         try {
             int cores = Runtime.getRuntime().availableProcessors();
             int onnxThreads = Math.max(1, cores - 2);
             
             env = OrtEnvironment.getEnvironment();
             
-            InputStream modelStream = context.getAssets().open(MODEL_NAME);
-            byte[] modelBytes = new byte[modelStream.available()];
-            modelStream.read(modelBytes);
-            modelStream.close();
+            byte[] modelBytes = readAsset(context, modelName);
             
-            OrtSession.SessionOptions options = new OrtSession.SessionOptions();
+            OrtSession.SessionOptions options = createSessionOptions(onnxThreads, true);
             
-            try {
-                options.addNnapi(EnumSet.of(NNAPIFlags.USE_FP16));
-                Log.i(TAG, "NNAPI enabled");
-            } catch (Exception e) {
-                Log.w(TAG, "NNAPI not available");
-            }
+            current = new ModelSession(modelName, env.createSession(modelBytes, options), INPUT_SIZE);
+            runOptions = new OrtSession.RunOptions();
             
-            options.setIntraOpNumThreads(onnxThreads);
-            options.setInterOpNumThreads(1);
-            options.setOptimizationLevel(OrtSession.SessionOptions.OptLevel.ALL_OPT);
+            presenceGate = createPresenceGate(context, gateModelName);
             
-            if (cores >= 6) {
-                options.setExecutionMode(OrtSession.SessionOptions.ExecutionMode.PARALLEL);
-            } else {
-                options.setExecutionMode(OrtSession.SessionOptions.ExecutionMode.SEQUENTIAL);
-            }
+            decoder = createDecoder(current.session);
+            configureInput(current);
             
-            session = env.createSession(modelBytes, options);
-            inputName = session.getInputNames().iterator().next();
+            pixelBuffer = new int[INPUT_SIZE * INPUT_SIZE];
+            preprocessKernel = new PreprocessKernel(
+                INPUT_SIZE, INPUT_SIZE, PreprocessKernel.defaultWorkers()
+            );
             
-            int bufferSize = 3 * INPUT_SIZE * INPUT_SIZE * Float.BYTES;
-            directBuffer = ByteBuffer.allocateDirect(bufferSize)
-                .order(ByteOrder.nativeOrder());
-            floatView = directBuffer.asFloatBuffer();
+            nms = new NonMaxSuppression(IOU_THRESHOLD, MAX_DETECTIONS);
             
-            precomputedAreas = new float[MAX_DETECTIONS];
-            suppressedFlags = new boolean[MAX_DETECTIONS];
+            resultCache = new DetectionCache(
+                CACHE_MAX_ENTRIES, CACHE_MAX_BYTES, CACHE_THUMB_SIZE, CACHE_MAX_CELL_DIFF
+            );
             
             Log.i(TAG, "Detector initialized");
             
@@ -133,149 +138,597 @@ public class OptimizedAnimeDetector {
         }
     }
     
+    private static byte[] readAsset(Context context, String name) throws IOException {
+        InputStream modelStream = context.getAssets().open(name);
+        byte[] modelBytes = new byte[modelStream.available()];
+        modelStream.read(modelBytes);
+        modelStream.close();
+        return modelBytes;
+    }
+    
+    private static OrtSession.SessionOptions createSessionOptions(int threads, boolean useNnapi)
+            throws OrtException {
+        int cores = Runtime.getRuntime().availableProcessors();
+        OrtSession.SessionOptions options = new OrtSession.SessionOptions();
+        
+        if (useNnapi) {
+            try {
+                options.addNnapi(EnumSet.of(NNAPIFlags.USE_FP16));
+                Log.i(TAG, "NNAPI enabled");
+            } catch (Exception e) {
+                Log.w(TAG, "NNAPI not available");
+            }
+        }
+        
+        options.setIntraOpNumThreads(threads);
+        options.setInterOpNumThreads(1);
+        options.setOptimizationLevel(OrtSession.SessionOptions.OptLevel.ALL_OPT);
+        
+        if (cores >= 6 && threads > 1) {
+            options.setExecutionMode(OrtSession.SessionOptions.ExecutionMode.PARALLEL);
+        } else {
+            options.setExecutionMode(OrtSession.SessionOptions.ExecutionMode.SEQUENTIAL);
+        }
+        
+        return options;
+    }
+    
+    /**
+     * شكل المخرج من بيانات الجلسة؛ الأبعاد الديناميكية تُحسم عند أول تشغيل
+     */
+    private static YoloDecoder createDecoder(OrtSession session) throws OrtException {
+        NodeInfo output = session.getOutputInfo().values().iterator().next();
+        if (!(output.getInfo() instanceof TensorInfo)) return null;
+        
+        long[] shape = ((TensorInfo) output.getInfo()).getShape();
+        Log.i(TAG, "Model output shape " + Arrays.toString(shape));
+        
+        for (long dim : shape) {
+            if (dim <= 0) return null;
+        }
+        return YoloDecoder.fromShape(shape, CONF_THRESHOLD);
+    }
+    
+    /**
+     * ✅ نموذج uint8 NHWC: 1.2MB من RGB المضغوط بدل 4.9MB من المستويات العائمة.
+     * يُعاد تخصيص المخزن فقط إذا تغيّر التخطيط بين الجلسة القديمة والجديدة
+     */
+    private void configureInput(ModelSession model) {
+        synchronized (bufferLock) {
+            if (directBuffer != null && model.packedInput == packedInput) return;
+            
+            packedInput = model.packedInput;
+            inputShape = model.inputShape;
+            directBuffer = allocateInput(model.packedInput);
+            floatView = model.packedInput ? null : directBuffer.asFloatBuffer();
+            if (model.packedInput) Log.i(TAG, "Packed uint8 NHWC input");
+        }
+    }
+    
+    private static ByteBuffer allocateInput(boolean packed) {
+        int bufferSize = 3 * INPUT_SIZE * INPUT_SIZE * (packed ? 1 : Float.BYTES);
+        return ByteBuffer.allocateDirect(bufferSize).order(ByteOrder.nativeOrder());
+    }
+    
+    /**
+     * يبني جلسة بديلة من أصل في التطبيق ويسخّنها على الخيط المستدعي؛ يجب ألا يكون خيط الكشف.
+     * الإطارات تستمر على الجلسة الحالية طوال البناء، والتبديل يحدث قبل الإطار التالي
+     */
+    public void swapModel(Context context, String modelName) throws IOException, OrtException {
+        int onnxThreads = Math.max(1, Runtime.getRuntime().availableProcessors() - 2);
+        swapModel(modelName, readAsset(context, modelName), onnxThreads, true, WARMUP_RUNS);
+    }
+    
+    /**
+     * @param name       اسم للسجلات و getModelName
+     * @param warmUpRuns تشغيلات تمهيدية على الجلسة الجديدة قبل أن تستلم أي إطار حقيقي
+     */
+    public void swapModel(String name, byte[] modelBytes, int threads, boolean useNnapi, int warmUpRuns)
+            throws OrtException {
+        long start = System.currentTimeMillis();
+        ModelSession next = new ModelSession(
+            name, env.createSession(modelBytes, createSessionOptions(threads, useNnapi)), INPUT_SIZE
+        );
+        
+        try {
+            warmUpSession(next, warmUpRuns);
+        } catch (OrtException e) {
+            next.release();
+            throw e;
+        }
+        
+        ModelSession replaced;
+        synchronized (swapLock) {
+            // الكاشف أُغلق أثناء البناء: لا أحد سيركّب الجلسة
+            if (closed) {
+                replaced = next;
+            } else {
+                replaced = pending;
+                pending = next;
+            }
+        }
+        if (replaced != null) replaced.release();
+        Log.i(TAG, "Model " + name + " ready for swap in " + (System.currentTimeMillis() - start) + "ms");
+    }
+    
+    /**
+     * مخزن إدخال مؤقت خاص بالتسخين: مخزن الكاشف يخص الجلسة الحالية وقد يختلف تخطيطه
+     */
+    private void warmUpSession(ModelSession model, int runs) throws OrtException {
+        ByteBuffer zeros = allocateInput(model.packedInput);
+        for (int i = 0; i < runs; i++) {
+            zeros.position(0);
+            try (OnnxTensor input = model.packedInput
+                     ? OnnxTensor.createTensor(env, zeros, model.inputShape, OnnxJavaType.UINT8)
+                     : OnnxTensor.createTensor(env, zeros.asFloatBuffer(), model.inputShape)) {
+                // النتيجة غير مهمة؛ الهدف تخصيصات ORT الكسولة
+                model.session.run(Collections.singletonMap(model.inputName, input)).close();
+            }
+        }
+    }
+    
+    /**
+     * يُستدعى على خيط الكشف بين إطارين: تركيب الجلسة الجاهزة وتحرير القديمة.
+     * القديمة تُغلق فوراً إذا لم يكن عليها تشغيل جارٍ، وإلا بعد انتهائه
+     */
+    private void applyPendingSwap() {
+        ModelSession next;
+        synchronized (swapLock) {
+            next = pending;
+            pending = null;
+        }
+        if (next == null) return;
+        
+        ModelSession old;
+        synchronized (bufferLock) {
+            configureInput(next);
+            old = current;
+            current = next;
+            batchDecoder = null;
+            try {
+                decoder = createDecoder(next.session);
+                if (decoder != null) applyClassThresholds(decoder);
+            } catch (OrtException e) {
+                decoder = null;
+            }
+        }
+        
+        // نتائج النموذج القديم لا تصلح للجديد
+        resultCache.clear();
+        old.release();
+        
+        synchronized (swapLock) {
+            swaps++;
+        }
+        Log.i(TAG, "Swapped model " + old.name + " -> " + next.name);
+    }
+    
+    /**
+     * مرجع على الجلسة الحالية طوال التشغيل؛ إعادة المحاولة إذا استُبدلت وأُغلقت بين القراءة والحجز
+     */
+    private ModelSession acquireCurrent() {
+        while (true) {
+            ModelSession model = current;
+            if (model.acquire()) return model;
+            if (model == current) throw new IllegalStateException("Detector closed");
+        }
+    }
+    
+    public String getModelName() {
+        return current.name;
+    }
+    
+    public long getSwapCount() {
+        synchronized (swapLock) {
+            return swaps;
+        }
+    }
+    
+    private PresenceGate createPresenceGate(Context context, String gateModelName) {
+        if (gateModelName == null) return null;
+        
+        try {
+            byte[] gateBytes = readAsset(context, gateModelName);
+            PresenceGate gate = new PresenceGate(
+                env, gateBytes, createSessionOptions(2, false),
+                GATE_INPUT_SIZE, GATE_THRESHOLD, GATE_OUTPUT, GATE_REFRESH_INTERVAL
+            );
+            Log.i(TAG, "Presence gate enabled: " + gateModelName);
+            return gate;
+        } catch (IOException e) {
+            Log.i(TAG, "No presence gate model, cascade disabled");
+        } catch (OrtException e) {
+            Log.w(TAG, "Failed to load presence gate", e);
+        }
+        return null;
+    }
+    
     public DetectionResult detect(Bitmap bitmap) {
+        return detect(bitmap, null);
+    }
+    
+    /**
+     * كشف داخل منطقة محددة فقط؛ الإحداثيات المعادة بإحداثيات الصورة الكاملة
+     */
+    public DetectionResult detect(Bitmap bitmap, Rect region) {
+        return detect(bitmap, region, false);
+    }
+    
+    /**
+     * @param letterbox تحجيم المنطقة بنسبة واحدة للمحورين مع حشو الباقي بدل مطّها إلى مربع:
+     *                  لشرائط التمرير الطويلة التي يشوّه المط صناديقها
+     */
+    public DetectionResult detect(Bitmap bitmap, Rect region, boolean letterbox) {
+        applyPendingSwap();
+        
         try {
-            preprocessBitmap(bitmap);
+            DetectionCache.Fingerprint fingerprint = resultCache.fingerprint(bitmap, region);
+            DetectionResult cached = resultCache.get(
+                fingerprint, bitmap.getWidth(), bitmap.getHeight()
+            );
+            if (cached != null) return cached;
             
-            float[][][] output;
-            synchronized (bufferLock) {
-                floatView.position(0);
-                
-                long[] shape = {1, 3, INPUT_SIZE, INPUT_SIZE};
-                OnnxTensor inputTensor = OnnxTensor.createTensor(env, floatView, shape);
-                
-                OrtSession.Result result = session.run(
-                    Collections.singletonMap(inputName, inputTensor)
-                );
-                
-                output = (float[][][]) result.get(0).getValue();
-                
-                result.close();
-                inputTensor.close();
+            // رفض المصنّف لا يُخزَّن في الكاش حتى لا يتجاوز التحديث الاحتياطي الدوري
+            if (presenceGate != null && cascadeEnabled && !presenceGate.admit(bitmap, region)) {
+                return new DetectionResult(new ArrayList<>(), bitmap.getWidth(), bitmap.getHeight());
             }
             
-            List<Detection> detections = postprocess(output, bitmap.getWidth(), bitmap.getHeight());
+            boolean padded = letterbox && region != null;
+            preprocessBitmap(bitmap, region, padded);
+            
+            long[] outputShape = runInference();
+            
+            List<Detection> detections;
+            if (region == null) {
+                detections = postprocess(outputShape, 0, 0,
+                    (float) bitmap.getWidth() / INPUT_SIZE, (float) bitmap.getHeight() / INPUT_SIZE);
+            } else if (padded) {
+                float scale = 1f / letterboxScale(region);
+                detections = postprocess(outputShape, region.left, region.top, scale, scale);
+            } else {
+                detections = postprocess(outputShape, region.left, region.top,
+                    (float) region.width() / INPUT_SIZE, (float) region.height() / INPUT_SIZE);
+            }
             
             updateAdaptiveThreshold(detections);
             
-            return new DetectionResult(detections, bitmap.getWidth(), bitmap.getHeight());
+            DetectionResult detectionResult = new DetectionResult(
+                detections, bitmap.getWidth(), bitmap.getHeight()
+            );
+            resultCache.put(fingerprint, detectionResult);
+            
+            return detectionResult;
             
+        } catch (InferenceCancelledException e) {
+            throw e;
         } catch (Exception e) {
             Log.e(TAG, "Detection error", e);
             return new DetectionResult(new ArrayList<>(), bitmap.getWidth(), bitmap.getHeight());
         }
     }
     
-    private void preprocessBitmap(Bitmap bitmap) {
+    /**
+     * ينسخ المخرج الأول إلى outputData المعاد استخدامه ويعيد شكله
+     */
+    private long[] runInference() throws OrtException {
         synchronized (bufferLock) {
-            floatView.clear();
-            
-            Bitmap resized = Bitmap.createScaledBitmap(bitmap, INPUT_SIZE, INPUT_SIZE, true);
-            
-            int[] pixels = new int[INPUT_SIZE * INPUT_SIZE];
-            resized.getPixels(pixels, 0, INPUT_SIZE, 0, 0, INPUT_SIZE, INPUT_SIZE);
-            
-            final float inv255 = 1.0f / 255.0f;
+            OnnxTensor inputTensor;
+            if (packedInput) {
+                directBuffer.position(0);
+                inputTensor = OnnxTensor.createTensor(env, directBuffer, inputShape, OnnxJavaType.UINT8);
+            } else {
+                floatView.position(0);
+                inputTensor = OnnxTensor.createTensor(env, floatView, inputShape);
+            }
             
-            for (int c = 0; c < 3; c++) {
-                for (int h = 0; h < INPUT_SIZE; h++) {
-                    for (int w = 0; w < INPUT_SIZE; w++) {
-                        int pixel = pixels[h * INPUT_SIZE + w];
-                        float value;
-                        
-                        if (c == 0) value = ((pixel >> 16) & 0xFF) * inv255;
-                        else if (c == 1) value = ((pixel >> 8) & 0xFF) * inv255;
-                        else value = (pixel & 0xFF) * inv255;
-                        
-                        floatView.put(value);
-                    }
-                }
+            ModelSession model = acquireCurrent();
+            OrtSession.Result result;
+            try {
+                result = runCancellable(model, Collections.singletonMap(model.inputName, inputTensor));
+            } catch (OrtException | RuntimeException e) {
+                inputTensor.close();
+                model.release();
+                throw e;
             }
             
-            floatView.flip();
-            resized.recycle();
+            try {
+                OnnxTensor outputTensor = (OnnxTensor) result.get(0);
+                long[] outputShape = outputTensor.getInfo().getShape();
+                FloatBuffer outputBuffer = outputTensor.getFloatBuffer();
+                
+                int size = outputBuffer.remaining();
+                if (outputData.length != size) outputData = new float[size];
+                outputBuffer.get(outputData, 0, size);
+                
+                return outputShape;
+            } finally {
+                result.close();
+                inputTensor.close();
+                model.release();
+            }
         }
     }
     
-    private List<Detection> postprocess(float[][][] output, int originalWidth, int originalHeight) {
-        int numPredictions = output[0][0].length;
+    /**
+     * @throws InferenceCancelledException إذا أُنهي التشغيل عبر cancelInFlight
+     */
+    private OrtSession.Result runCancellable(ModelSession model, Map<String, OnnxTensor> inputs)
+            throws OrtException {
+        synchronized (runLock) {
+            runOptions.setTerminate(false);
+            cancelRequested = false;
+            runInFlight = true;
+        }
         
-        List<Detection> allDetections = new ArrayList<>();
+        try {
+            return model.session.run(inputs, runOptions);
+        } catch (OrtException e) {
+            synchronized (runLock) {
+                if (cancelRequested) {
+                    cancelledRuns++;
+                    throw new InferenceCancelledException();
+                }
+            }
+            throw e;
+        } finally {
+            synchronized (runLock) {
+                runInFlight = false;
+            }
+        }
+    }
+    
+    /**
+     * إنهاء session.run الجاري (من أي خيط)؛ detect يرمي InferenceCancelledException.
+     * false إذا لم يكن هناك استدلال جارٍ (المعالجة المسبقة أو الكاش أو المصنّف مثلاً)
+     */
+    public boolean cancelInFlight() {
+        synchronized (runLock) {
+            if (!runInFlight || cancelRequested) return false;
+            try {
+                runOptions.setTerminate(true);
+            } catch (OrtException e) {
+                Log.w(TAG, "Failed to terminate run", e);
+                return false;
+            }
+            cancelRequested = true;
+            return true;
+        }
+    }
+    
+    public long getCancelledRuns() {
+        synchronized (runLock) {
+            return cancelledRuns;
+        }
+    }
+    
+    /**
+     * تشغيلات تمهيدية على موتر فارغ حتى لا يدفع أول إطار حقيقي ثمن التخصيصات الكسولة في ORT
+     */
+    public void warmUp(int runs) {
+        applyPendingSwap();
         
-        float scaleX = (float) originalWidth / INPUT_SIZE;
-        float scaleY = (float) originalHeight / INPUT_SIZE;
+        synchronized (bufferLock) {
+            for (int i = 0; i < directBuffer.capacity(); i++) directBuffer.put(i, (byte) 0);
+            preprocessKernel.invalidate();
+        }
         
-        for (int i = 0; i < numPredictions && allDetections.size() < MAX_DETECTIONS; i++) {
-            float centerX = output[0][0][i];
-            float centerY = output[0][1][i];
-            float width = output[0][2][i];
-            float height = output[0][3][i];
+        try {
+            for (int i = 0; i < runs; i++) {
+                long start = System.currentTimeMillis();
+                runInference();
+                Log.i(TAG, "Warm-up run " + (i + 1) + ": " + (System.currentTimeMillis() - start) + "ms");
+            }
+        } catch (OrtException e) {
+            Log.w(TAG, "Warm-up failed", e);
+        }
+    }
+    
+    private void preprocessBitmap(Bitmap bitmap, Rect region, boolean letterbox) {
+        synchronized (bufferLock) {
+            if (letterbox) {
+                loadLetterboxed(bitmap, region);
+            } else {
+                loadPixels(bitmap, region);
+            }
             
-            float conf = output[0][4][i];
+            // ✅ المخزن المباشر دائم: تُعاد كتابة المربعات التي تغيّرت منذ آخر إطار فقط
+            if (packedInput) {
+                preprocessKernel.packRgbIncremental(pixelBuffer, directBuffer);
+            } else {
+                preprocessKernel.convertIncremental(pixelBuffer, floatView);
+            }
+        }
+    }
+    
+    /**
+     * تحجيم المنطقة (أو الإطار كاملاً) إلى INPUT_SIZE وقراءة البكسلات في pixelBuffer
+     */
+    private void loadPixels(Bitmap bitmap, Rect region) {
+        synchronized (bufferLock) {
+            Bitmap resized;
+            if (region == null) {
+                resized = Bitmap.createScaledBitmap(bitmap, INPUT_SIZE, INPUT_SIZE, true);
+            } else {
+                Matrix scale = new Matrix();
+                scale.setScale(
+                    (float) INPUT_SIZE / region.width(),
+                    (float) INPUT_SIZE / region.height()
+                );
+                resized = Bitmap.createBitmap(
+                    bitmap, region.left, region.top, region.width(), region.height(), scale, true
+                );
+            }
             
-            if (conf <= adaptiveConfThreshold) continue;
+            resized.getPixels(pixelBuffer, 0, INPUT_SIZE, 0, 0, INPUT_SIZE, INPUT_SIZE);
+            resized.recycle();
+        }
+    }
+    
+    /**
+     * المنطقة بنسبة أبعادها في الزاوية العليا اليسرى والباقي بالرمادي المعتاد لحشو YOLO
+     */
+    private void loadLetterboxed(Bitmap bitmap, Rect region) {
+        synchronized (bufferLock) {
+            float s = letterboxScale(region);
+            int width = Math.max(1, Math.min(INPUT_SIZE, Math.round(region.width() * s)));
+            int height = Math.max(1, Math.min(INPUT_SIZE, Math.round(region.height() * s)));
             
-            float x1 = (centerX - width * 0.5f) * scaleX;
-            float y1 = (centerY - height * 0.5f) * scaleY;
-            float x2 = (centerX + width * 0.5f) * scaleX;
-            float y2 = (centerY + height * 0.5f) * scaleY;
+            Matrix scale = new Matrix();
+            scale.setScale((float) width / region.width(), (float) height / region.height());
+            Bitmap resized = Bitmap.createBitmap(
+                bitmap, region.left, region.top, region.width(), region.height(), scale, true
+            );
             
-            if (x2 <= x1 || y2 <= y1 || x1 < 0 || y1 < 0) continue;
+            resized.getPixels(pixelBuffer, 0, INPUT_SIZE, 0, 0, width, height);
+            resized.recycle();
             
-            allDetections.add(new Detection(x1, y1, x2, y2, conf, 0));
+            for (int y = 0; y < height; y++) {
+                Arrays.fill(pixelBuffer, y * INPUT_SIZE + width, (y + 1) * INPUT_SIZE, LETTERBOX_COLOR);
+            }
+            Arrays.fill(pixelBuffer, height * INPUT_SIZE, pixelBuffer.length, LETTERBOX_COLOR);
         }
-        
-        return applyNMS(allDetections);
     }
     
-    private List<Detection> applyNMS(List<Detection> detections) {
-        if (detections.isEmpty()) return detections;
-        
-        Collections.sort(detections, (a, b) -> Float.compare(b.confidence, a.confidence));
+    private static float letterboxScale(Rect region) {
+        return Math.min((float) INPUT_SIZE / region.width(), (float) INPUT_SIZE / region.height());
+    }
+    
+    /**
+     * ✅ كشف عدة إطارات في session.run واحد لكل دفعة: للفحص دون اتصال وإعادة التشغيل حيث تهم
+     * الإنتاجية لا زمن الإطار. كل إطار مستقل: بدون كاش أو مصنّف حضور أو عتبة تكيفية.
+     * نموذج ببعد دفعة ثابت يُشغَّل إطاراً في كل تشغيل بنفس المسار.
+     * يحجز مخازن الكشف طوال الدفعة، فلا يُستدعى على خيط الـ overlay الحي
+     */
+    public List<DetectionResult> detectBatch(List<Bitmap> frames) {
+        List<DetectionResult> results = new ArrayList<>(frames.size());
+        if (frames.isEmpty()) return results;
         
-        for (int i = 0; i < detections.size(); i++) {
-            suppressedFlags[i] = false;
+        ModelSession model = acquireCurrent();
+        try {
+            int batchSize = model.dynamicBatch ? MAX_BATCH_SIZE : 1;
+            for (int start = 0; start < frames.size(); start += batchSize) {
+                List<Bitmap> chunk = frames.subList(start, Math.min(frames.size(), start + batchSize));
+                runBatch(model, chunk, results);
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Batch detection error", e);
+            for (int i = results.size(); i < frames.size(); i++) {
+                Bitmap frame = frames.get(i);
+                results.add(new DetectionResult(new ArrayList<>(), frame.getWidth(), frame.getHeight()));
+            }
+        } finally {
+            model.release();
         }
-        
-        List<Detection> result = new ArrayList<>();
-        
-        for (int i = 0; i < detections.size(); i++) {
-            if (suppressedFlags[i]) continue;
+        return results;
+    }
+    
+    private void runBatch(ModelSession model, List<Bitmap> chunk, List<DetectionResult> out)
+            throws OrtException {
+        synchronized (bufferLock) {
+            int n = chunk.size();
+            int frameBytes = 3 * INPUT_SIZE * INPUT_SIZE * (model.packedInput ? 1 : Float.BYTES);
+            int needed = n * frameBytes;
+            if (batchBuffer == null || batchBuffer.capacity() < needed) {
+                batchBuffer = ByteBuffer.allocateDirect(Math.max(needed, MAX_BATCH_SIZE * frameBytes))
+                    .order(ByteOrder.nativeOrder());
+            }
             
-            Detection current = detections.get(i);
-            result.add(current);
+            // كل إطار يُكتب في شريحته؛ النواة تكتب من الموضع 0 للمخزن الذي تستلمه
+            for (int i = 0; i < n; i++) {
+                loadPixels(chunk.get(i), null);
+                ByteBuffer slice = sliceOf(batchBuffer, i * frameBytes, frameBytes);
+                if (model.packedInput) {
+                    preprocessKernel.packRgb(pixelBuffer, slice);
+                } else {
+                    preprocessKernel.convert(pixelBuffer, slice.asFloatBuffer());
+                }
+            }
             
-            float areaA = current.area;
+            long[] shape = model.inputShape.clone();
+            shape[0] = n;
+            ByteBuffer input = sliceOf(batchBuffer, 0, needed);
             
-            for (int j = i + 1; j < detections.size(); j++) {
-                if (suppressedFlags[j]) continue;
+            try (OnnxTensor inputTensor = model.packedInput
+                     ? OnnxTensor.createTensor(env, input, shape, OnnxJavaType.UINT8)
+                     : OnnxTensor.createTensor(env, input.asFloatBuffer(), shape);
+                 OrtSession.Result result = model.session.run(
+                     Collections.singletonMap(model.inputName, inputTensor))) {
                 
-                Detection other = detections.get(j);
+                OnnxTensor outputTensor = (OnnxTensor) result.get(0);
+                long[] outputShape = outputTensor.getInfo().getShape();
+                FloatBuffer outputBuffer = outputTensor.getFloatBuffer();
                 
-                if (current.x2 < other.x1 || other.x2 < current.x1 ||
-                    current.y2 < other.y1 || other.y2 < current.y1) {
-                    continue;
+                int sliceSize = outputBuffer.remaining() / n;
+                long[] sliceShape = outputShape.clone();
+                sliceShape[0] = 1;
+                if (batchDecoder == null || !batchDecoder.matches(sliceShape)) {
+                    batchDecoder = YoloDecoder.fromShape(sliceShape, CONF_THRESHOLD);
+                    applyClassThresholds(batchDecoder);
                 }
+                if (batchOutput.length != sliceSize) batchOutput = new float[sliceSize];
                 
-                float interX1 = Math.max(current.x1, other.x1);
-                float interY1 = Math.max(current.y1, other.y1);
-                float interX2 = Math.min(current.x2, other.x2);
-                float interY2 = Math.min(current.y2, other.y2);
-                
-                float interArea = (interX2 - interX1) * (interY2 - interY1);
-                
-                if (interArea <= 0) continue;
-                
-                float unionArea = areaA + other.area - interArea;
-                float iou = interArea / unionArea;
-                
-                if (iou > IOU_THRESHOLD) {
-                    suppressedFlags[j] = true;
+                // كل شريحة من المخرج تُفك بشكل مستقل بمقياس إطارها
+                for (int i = 0; i < n; i++) {
+                    outputBuffer.get(batchOutput, 0, sliceSize);
+                    Bitmap frame = chunk.get(i);
+                    
+                    List<Detection> decoded = new ArrayList<>();
+                    batchDecoder.decode(
+                        batchOutput, CONF_THRESHOLD,
+                        (float) frame.getWidth() / INPUT_SIZE, (float) frame.getHeight() / INPUT_SIZE,
+                        0, 0, MAX_DETECTIONS, decoded
+                    );
+                    out.add(new DetectionResult(nms.apply(decoded), frame.getWidth(), frame.getHeight()));
                 }
             }
+            
+            batchRuns++;
+            batchFrames += n;
+        }
+    }
+    
+    private static ByteBuffer sliceOf(ByteBuffer buffer, int offset, int length) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset);
+        view.limit(offset + length);
+        return view.slice().order(ByteOrder.nativeOrder());
+    }
+    
+    /**
+     * متوسط الإطارات لكل تشغيل في مسار الدفعات
+     */
+    public float getAvgBatchSize() {
+        synchronized (bufferLock) {
+            return batchRuns == 0 ? 0f : (float) batchFrames / batchRuns;
+        }
+    }
+    
+    /**
+     * تحرير مخزن الدفعات (حتى 39MB لدفعة 8 بإدخال عائم) بعد انتهاء العمل دون اتصال
+     */
+    public void releaseBatchBuffers() {
+        synchronized (bufferLock) {
+            batchBuffer = null;
+            batchOutput = new float[0];
+        }
+    }
+    
+    private List<Detection> postprocess(long[] outputShape, int offsetX, int offsetY,
+                                        float scaleX, float scaleY) {
+        if (decoder == null || !decoder.matches(outputShape)) {
+            decoder = YoloDecoder.fromShape(outputShape, CONF_THRESHOLD);
+            applyClassThresholds(decoder);
+            Log.i(TAG, "Decoder: " + decoder.getNumClasses() + " classes, " + decoder.getLayout());
         }
         
-        return result;
+        List<Detection> allDetections = new ArrayList<>();
+        
+        decoder.decode(
+            outputData, adaptiveConfThreshold, scaleX, scaleY, offsetX, offsetY,
+            MAX_DETECTIONS, allDetections
+        );
+        
+        return nms.apply(allDetections);
     }
     
     private void updateAdaptiveThreshold(List<Detection> detections) {
@@ -287,9 +740,82 @@ public class OptimizedAnimeDetector {
         }
     }
     
+    /**
+     * حجم المخازن الكبيرة التي يملكها الكاشف (بدون arena الخاصة بـ ORT)
+     */
+    public long getBufferBytes() {
+        synchronized (bufferLock) {
+            return directBuffer.capacity() +
+                (long) pixelBuffer.length * Integer.BYTES +
+                (long) outputData.length * Float.BYTES +
+                (batchBuffer != null ? batchBuffer.capacity() : 0) +
+                (long) batchOutput.length * Float.BYTES;
+        }
+    }
+    
+    /**
+     * نسبة مربعات الإدخال المعاد تحويلها في المعالجة التزايدية
+     */
+    public float getConvertedTileFraction() {
+        return preprocessKernel.getConvertedTileFraction();
+    }
+    
+    public DetectionCache getResultCache() {
+        return resultCache;
+    }
+    
+    /**
+     * عتبة ثقة خاصة بفئة؛ العتبة التكيفية تبقى حداً أدنى فوقها
+     */
+    public void setClassThreshold(int classId, float threshold) {
+        synchronized (classThresholds) {
+            classThresholds.put(classId, threshold);
+            if (decoder != null) applyClassThresholds(decoder);
+            if (batchDecoder != null) applyClassThresholds(batchDecoder);
+        }
+    }
+    
+    private void applyClassThresholds(YoloDecoder target) {
+        synchronized (classThresholds) {
+            for (Map.Entry<Integer, Float> entry : classThresholds.entrySet()) {
+                if (entry.getKey() < target.getNumClasses()) {
+                    target.setClassThreshold(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+    }
+    
+    public void setClassAwareNms(boolean enabled) {
+        nms.setClassAware(enabled);
+    }
+    
+    public void setCascadeEnabled(boolean enabled) {
+        cascadeEnabled = enabled;
+    }
+    
+    /**
+     * null إذا لم يُحمَّل نموذج مرحلة الحضور
+     */
+    public PresenceGate getPresenceGate() {
+        return presenceGate;
+    }
+    
     public void close() {
+        resultCache.clear();
+        preprocessKernel.shutdown();
+        if (presenceGate != null) presenceGate.close();
+        
+        ModelSession unused;
+        synchronized (swapLock) {
+            unused = pending;
+            pending = null;
+            closed = true;
+        }
+        if (unused != null) unused.release();
+        if (current != null) current.release();
+        
         try {
-            if (session != null) session.close();
+            runOptions.close();
             if (env != null) env.close();
         } catch (Exception e) {
             Log.e(TAG, "Error closing", e);
@@ -1,5 +1,6 @@
 package com.animedetector;
 
+import android.app.ActivityManager;
 import android.app.Notification;
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
@@ -38,18 +39,30 @@ import android.widget.TextView;
 import androidx.core.app.NotificationCompat;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
 
 public class OverlayService extends Service {
     private static final String TAG = "OverlayService";
     private static final String CHANNEL_ID = "AnimeDetectorChannel";
     private static final int NOTIFICATION_ID = 1;
-    private static final int FRAME_SKIP = 2;
+    // ✅ ميزانية الاستدلال = التخطي الثابت السابق (إطار من كل 3 عند 60Hz)، لكن على إطارات المحتوى الجديدة
+    private static final long MIN_INFERENCE_INTERVAL_NANOS = 50_000_000L;
+    private static final long CADENCE_IDLE_NANOS = 250_000_000L;
+    private static final int WARMUP_RUNS = 2;
     
     // ✅ إضافة: timeout لإخفاء المربعات بعد عدم الكشف
     private static final long HIDE_TIMEOUT = 300; // 300ms بدون كشف = إخفاء
     
+    // ✅ تعويض التمرير: إعادة كشف كاملة بعد عدد محدود من الإطارات المُزاحة
+    private static final int MAX_COMPENSATED_FRAMES = 6;
+    private static final float SCROLL_MAX_SHIFT = 0.4f;
+    private static final int SCROLL_OVERLAP = 48;
+    // الشريط المكشوف يتراكم بلا استدلال حتى ربع عرض المحتوى (أو ربع طوله على محور التمرير)
+    private static final float SCROLL_STRIP_FRACTION = 0.25f;
+    
     private static final AtomicBoolean isServiceRunning = new AtomicBoolean(false);
     
     private MediaProjectionManager projectionManager;
@@ -62,9 +75,18 @@ public class OverlayService extends Service {
     private ImageView overlayImageView;
     private TextView statsText;
     
-    private OptimizedAnimeDetector detector;
+    private volatile OptimizedAnimeDetector detector;
+    private final CompletableFuture<OptimizedAnimeDetector> detectorReady = new CompletableFuture<>();
     private DetectionSmoother smoother;
     private PerformanceMonitor perfMonitor;
+    private DebugAllocationCounters allocCounters;
+    private ScrollEstimator scrollEstimator;
+    private ContentAreaDetector contentArea;
+    private DetectionResult lastRawResult;
+    private int compensatedFrames = 0;
+    // الإزاحة المتراكمة منذ آخر استدلال على الشريط المكشوف (بإشارتها)
+    private int exposedX;
+    private int exposedY;
     
     private HandlerThread captureThread;
     private Handler captureHandler;
@@ -77,7 +99,12 @@ public class OverlayService extends Service {
     private int screenDensity;
     
     private final AtomicBoolean isProcessing = new AtomicBoolean(false);
-    private final AtomicInteger frameCounter = new AtomicInteger(0);
+    
+    // ✅ إلغاء الاستدلال المتقادم عند تغيّر الشاشة فجأة، ثم إعادة البدء على الإطار التالي فوراً
+    private static final float SCENE_CHANGE_THRESHOLD = 24f;
+    private final FrameChangeMonitor frameChange = new FrameChangeMonitor(SCENE_CHANGE_THRESHOLD);
+    private final AtomicBoolean restartPending = new AtomicBoolean(false);
+    private final CadenceEstimator cadence = new CadenceEstimator(MIN_INFERENCE_INTERVAL_NANOS, CADENCE_IDLE_NANOS);
     
     private volatile Bitmap overlayBitmap;
     private final Object overlayLock = new Object();
@@ -86,6 +113,28 @@ public class OverlayService extends Service {
     private final Paint censorPaint = new Paint();
     private Bitmap patternBitmap; // النمط المخصص
     
+    // ✅ أوضاع الحجب: نمط / فسيفساء / تمويه بميزانية زمنية لكل إطار
+    private static final float CENSOR_BUDGET_MS = 4f;
+    private static final long CENSOR_PIXEL_BUDGET = 600_000;
+    private CensorRenderer censorRenderer;
+    
+    // ✅ ميزانية الذاكرة والتخفيض التدريجي عند الضغط
+    private static final long DEFAULT_MEMORY_BUDGET_MB = 96;
+    private static final int REDUCED_CACHE_ENTRIES = 8;
+    private static final long REDUCED_CACHE_BYTES = 32 * 1024;
+    private MemoryBudget memoryBudget;
+    private volatile float overlayScale = 1f;
+    private volatile float captureScale = 1f;
+    
+    // ✅ تصدير الكشوفات الحية للعمليات الأخرى عبر الذاكرة المشتركة
+    private static final int EXPORT_CAPACITY = 64;
+    private DetectionExport detectionExport;
+    private long exportedFrames;
+    
+    // ✅ تبديل النموذج دون إيقاف الخدمة: startService بهذا الإجراء مع extra باسم modelName
+    public static final String ACTION_SWAP_MODEL = "com.animedetector.action.SWAP_MODEL";
+    private final AtomicBoolean swapInProgress = new AtomicBoolean(false);
+    
     // ✅ إضافة: تتبع آخر كشف
     private volatile long lastDetectionTime = 0;
     private final Runnable hideOverlayRunnable = this::hideOverlayIfNeeded;
@@ -119,17 +168,132 @@ public class OverlayService extends Service {
         // ✅ إنشاء النمط المخصص
         createCensorPattern();
         
+        smoother = new DetectionSmoother(5);
+        scrollEstimator = new ScrollEstimator(64, 480, SCROLL_MAX_SHIFT);
+        contentArea = new ContentAreaDetector(
+            getSystemBarHeight("status_bar_height"), getSystemBarHeight("navigation_bar_height"),
+            screenHeight
+        );
+        perfMonitor = new PerformanceMonitor();
+        
+        memoryBudget = new MemoryBudget(defaultMemoryBudget());
+        memoryBudget.addListener(this::applyDegradationLevel);
+        memoryBudget.track("pattern", patternBitmap.getByteCount());
+        
+        detectionExport = DetectionExport.create(EXPORT_CAPACITY);
+        if (detectionExport != null) detectionExport.activate();
+        
+        // ✅ تحميل النموذج خارج الـ main thread؛ الالتقاط والـ overlay يبدآن بالتوازي
+        detectionHandler.post(this::initDetector);
+        
+        isServiceRunning.set(true);
+    }
+    
+    /**
+     * ✅ بناء الكاشف وتسخينه على خيط الكشف، ثم إعلان الجاهزية
+     */
+    private void initDetector() {
         try {
-            detector = new OptimizedAnimeDetector(this);
-            smoother = new DetectionSmoother(5);
-            perfMonitor = new PerformanceMonitor();
+            long start = System.currentTimeMillis();
+            OptimizedAnimeDetector created = new OptimizedAnimeDetector(this);
+            created.warmUp(WARMUP_RUNS);
+            
+            detector = created;
+            detectorReady.complete(created);
+            Log.i(TAG, "Detector ready in " + (System.currentTimeMillis() - start) + "ms");
         } catch (Exception e) {
             Log.e(TAG, "Failed to init detector", e);
-            stopSelf();
+            detectorReady.completeExceptionally(e);
+            mainHandler.post(this::stopSelf);
+        }
+    }
+    
+    /**
+     * ✅ بناء الجلسة الجديدة وتسخينها على خيط منفصل؛ خيط الكشف يستمر على القديمة حتى التبديل
+     */
+    private void requestModelSwap(String modelName) {
+        OptimizedAnimeDetector current = detector;
+        if (modelName == null || current == null) {
+            Log.w(TAG, "Model swap ignored: " + (modelName == null ? "no modelName" : "detector not ready"));
+            return;
+        }
+        if (!swapInProgress.compareAndSet(false, true)) {
+            Log.w(TAG, "Model swap already in progress");
             return;
         }
         
-        isServiceRunning.set(true);
+        new Thread(() -> {
+            try {
+                current.swapModel(this, modelName);
+            } catch (Exception e) {
+                Log.e(TAG, "Model swap failed, keeping " + current.getModelName(), e);
+            } finally {
+                swapInProgress.set(false);
+            }
+        }, "ModelSwapThread").start();
+    }
+    
+    private int getSystemBarHeight(String name) {
+        int id = getResources().getIdentifier(name, "dimen", "android");
+        return id > 0 ? getResources().getDimensionPixelSize(id) : 0;
+    }
+    
+    private long defaultMemoryBudget() {
+        ActivityManager am = (ActivityManager) getSystemService(ACTIVITY_SERVICE);
+        long budgetMb = DEFAULT_MEMORY_BUDGET_MB;
+        if (am != null) {
+            budgetMb = Math.min(budgetMb, am.getMemoryClass() / 2);
+            if (am.isLowRamDevice()) budgetMb = Math.min(budgetMb, DEFAULT_MEMORY_BUDGET_MB / 2);
+        }
+        return Math.max(16, budgetMb) * 1024 * 1024;
+    }
+    
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        Log.w(TAG, "onTrimMemory " + level);
+        if (memoryBudget != null) memoryBudget.onTrimMemory(level);
+    }
+    
+    @Override
+    public void onLowMemory() {
+        super.onLowMemory();
+        if (memoryBudget != null) memoryBudget.onTrimMemory(TRIM_MEMORY_COMPLETE);
+    }
+    
+    /**
+     * ✅ تطبيق مستوى التخفيض: تحرير الكاش ← خفض دقة الـ overlay ← خفض دقة الالتقاط
+     */
+    private void applyDegradationLevel(int level) {
+        Log.w(TAG, "Memory degradation level " + level);
+        
+        OptimizedAnimeDetector current = detector;
+        if (current != null) {
+            DetectionCache cache = current.getResultCache();
+            if (level >= MemoryBudget.LEVEL_RELEASE_CACHES) {
+                cache.clear();
+                cache.setLimits(REDUCED_CACHE_ENTRIES, REDUCED_CACHE_BYTES);
+            } else {
+                cache.restoreDefaultLimits();
+            }
+        }
+        
+        if (level >= MemoryBudget.LEVEL_RELEASE_CACHES) {
+            censorRenderer.trim();
+            contentArea.trim();
+        }
+        
+        overlayScale = level >= MemoryBudget.LEVEL_REDUCED ? 0.5f : 1f;
+        
+        float targetCapture = level >= MemoryBudget.LEVEL_MINIMAL ? 0.5f : 1f;
+        if (targetCapture != captureScale) {
+            captureScale = targetCapture;
+            captureHandler.post(this::resizeCapture);
+        }
+    }
+    
+    private boolean isDetectorReady() {
+        return detectorReady.isDone() && !detectorReady.isCompletedExceptionally();
     }
     
     /**
@@ -166,6 +330,8 @@ public class OverlayService extends Service {
         );
         
         censorPaint.setShader(shader);
+        
+        censorRenderer = new CensorRenderer(censorPaint, CENSOR_BUDGET_MS, CENSOR_PIXEL_BUDGET);
     }
     
     @Override
@@ -178,6 +344,11 @@ public class OverlayService extends Service {
         createNotificationChannel();
         startForeground(NOTIFICATION_ID, createNotification());
         
+        if (ACTION_SWAP_MODEL.equals(intent.getAction())) {
+            requestModelSwap(intent.getStringExtra("modelName"));
+            return START_STICKY;
+        }
+        
         int resultCode = intent.getIntExtra("resultCode", 0);
         Intent data = intent.getParcelableExtra("data");
         
@@ -187,6 +358,34 @@ public class OverlayService extends Service {
             return START_NOT_STICKY;
         }
         
+        String mode = intent.getStringExtra("censorMode");
+        if (mode != null) {
+            try {
+                censorRenderer.setMode(CensorRenderer.Mode.valueOf(mode));
+            } catch (IllegalArgumentException e) {
+                Log.w(TAG, "Unknown censor mode: " + mode);
+            }
+        }
+        
+        int budgetMb = intent.getIntExtra("memoryBudgetMb", 0);
+        if (budgetMb > 0) memoryBudget.setBudgetBytes(budgetMb * 1024L * 1024L);
+        
+        // ✅ قياس التخصيصات وGC لكل إطار (اختياري: عدّاد ART يضيف كلفة على كل تخصيص)
+        if (intent.getBooleanExtra("allocTelemetry", false) && allocCounters == null) {
+            allocCounters = new DebugAllocationCounters();
+            perfMonitor.setAllocationCounters(allocCounters);
+        }
+        
+        // ✅ مناطق استبعاد يحددها المستخدم: [left, top, right, bottom, ...]
+        int[] zones = intent.getIntArrayExtra("exclusionZones");
+        if (zones != null) {
+            List<Rect> rects = new ArrayList<>();
+            for (int i = 0; i + 3 < zones.length; i += 4) {
+                rects.add(new Rect(zones[i], zones[i + 1], zones[i + 2], zones[i + 3]));
+            }
+            contentArea.setExclusionZones(rects);
+        }
+        
         startScreenCapture(resultCode, data);
         createOverlayView();
         
@@ -220,22 +419,7 @@ public class OverlayService extends Service {
     }
     
     private void startScreenCapture(int resultCode, Intent data) {
-        imageReader = ImageReader.newInstance(
-            screenWidth, screenHeight, PixelFormat.RGBA_8888, 2
-        );
-        
-        imageReader.setOnImageAvailableListener(reader -> {
-            if (frameCounter.incrementAndGet() % (FRAME_SKIP + 1) != 0) {
-                Image image = reader.acquireLatestImage();
-                if (image != null) image.close();
-                return;
-            }
-            
-            Image image = reader.acquireLatestImage();
-            if (image != null) {
-                processImage(image);
-            }
-        }, captureHandler);
+        imageReader = createImageReader(screenWidth, screenHeight);
         
         mediaProjection = projectionManager.getMediaProjection(resultCode, data);
         
@@ -248,6 +432,76 @@ public class OverlayService extends Service {
         Log.i(TAG, "Screen capture started");
     }
     
+    private ImageReader createImageReader(int width, int height) {
+        ImageReader reader = ImageReader.newInstance(
+            width, height, PixelFormat.RGBA_8888, 2
+        );
+        
+        reader.setOnImageAvailableListener(r -> {
+            Image image = r.acquireLatestImage();
+            if (image == null) return;
+            
+            // ✅ كل إطار ملتقط يحدّث الإيقاع؛ الاستدلال على أول إطار من كل إطار محتوى جديد
+            Image.Plane plane = image.getPlanes()[0];
+            long timestamp = image.getTimestamp();
+            cadence.onFrame(plane.getBuffer(), plane.getRowStride(), plane.getPixelStride(),
+                image.getWidth(), image.getHeight(), timestamp);
+            
+            boolean restart = !isProcessing.get() && restartPending.getAndSet(false);
+            if (!restart && !cadence.shouldInfer(timestamp)) {
+                cancelIfStale(image);
+                image.close();
+                return;
+            }
+            
+            processImage(image);
+        }, captureHandler);
+        
+        memoryBudget.track("imageReader", 2L * width * height * 4);
+        return reader;
+    }
+    
+    /**
+     * ✅ إطار جديد مختلف بوضوح عن الإطار قيد الاستدلال: إنهاء التشغيل الجاري وطلب إعادة البدء
+     */
+    private void cancelIfStale(Image image) {
+        OptimizedAnimeDetector current = detector;
+        if (current == null || !isProcessing.get()) return;
+        
+        Image.Plane plane = image.getPlanes()[0];
+        if (frameChange.differsFromProcessing(plane.getBuffer(), plane.getRowStride(),
+                plane.getPixelStride(), image.getWidth(), image.getHeight())) {
+            if (current.cancelInFlight()) restartPending.set(true);
+        }
+    }
+    
+    /**
+     * ✅ تغيير دقة الالتقاط دون إيقاف MediaProjection (على خيط الالتقاط)
+     */
+    private void resizeCapture() {
+        if (virtualDisplay == null || imageReader == null) return;
+        
+        int width = Math.max(2, Math.round(screenWidth * captureScale)) & ~1;
+        int height = Math.max(2, Math.round(screenHeight * captureScale)) & ~1;
+        if (imageReader.getWidth() == width && imageReader.getHeight() == height) return;
+        
+        ImageReader old = imageReader;
+        imageReader = createImageReader(width, height);
+        cadence.reset();
+        virtualDisplay.resize(width, height, screenDensity);
+        virtualDisplay.setSurface(imageReader.getSurface());
+        
+        // الإطار الجاري قد يحمل Image من القارئ القديم: الإغلاق بعد انتهائه على خيط الكشف،
+        // ومعه تصفير تاريخ الصناديق بالدقة القديمة حتى لا يُخلط مع صناديق الدقة الجديدة
+        detectionHandler.post(() -> {
+            old.close();
+            smoother.clear();
+            lastRawResult = null;
+        });
+        
+        Log.i(TAG, "Capture resized to " + width + "x" + height);
+    }
+    
     private void createOverlayView() {
         overlayView = LayoutInflater.from(this).inflate(R.layout.overlay_layout, null);
         overlayImageView = overlayView.findViewById(R.id.overlayImage);
@@ -274,50 +528,169 @@ public class OverlayService extends Service {
     }
     
     private void processImage(Image image) {
+        // ✅ إسقاط الإطارات بهدوء حتى يجهز الكاشف
+        if (!isDetectorReady()) {
+            image.close();
+            return;
+        }
+        
         if (!isProcessing.compareAndSet(false, true)) {
+            cancelIfStale(image);
             image.close();
             return;
         }
         
+        Image.Plane plane = image.getPlanes()[0];
+        frameChange.markProcessing(plane.getBuffer(), plane.getRowStride(),
+            plane.getPixelStride(), image.getWidth(), image.getHeight());
+        cadence.markInferred(image.getTimestamp());
+        
         perfMonitor.frameStart();
         
         detectionHandler.post(() -> {
             try {
                 long start = System.currentTimeMillis();
+                long timestamp = image.getTimestamp();
+                perfMonitor.beginFrameAllocation();
                 
+                perfMonitor.stageStart(PerformanceMonitor.STAGE_CONVERT);
                 Bitmap bitmap = imageToBitmap(image);
+                perfMonitor.stageEnd(PerformanceMonitor.STAGE_CONVERT);
                 
                 if (bitmap != null) {
-                    OptimizedAnimeDetector.DetectionResult result = detector.detect(bitmap);
-                    result = smoother.smooth(result);
-                    
-                    long elapsed = System.currentTimeMillis() - start;
-                    perfMonitor.frameEnd(elapsed);
-                    
-                    // ✅ تحديث وقت آخر كشف
-                    if (!result.detections.isEmpty()) {
-                        lastDetectionTime = System.currentTimeMillis();
+                    try {
+                        perfMonitor.stageStart(PerformanceMonitor.STAGE_DETECT);
+                        DetectionResult result = detectFrame(bitmap);
+                        perfMonitor.stageEnd(PerformanceMonitor.STAGE_DETECT);
+                        
+                        perfMonitor.stageStart(PerformanceMonitor.STAGE_SMOOTH);
+                        result = smoother.smooth(result);
+                        perfMonitor.stageEnd(PerformanceMonitor.STAGE_SMOOTH);
+                        
+                        long elapsed = System.currentTimeMillis() - start;
+                        perfMonitor.frameEnd(elapsed);
+                        
+                        // ✅ تحديث وقت آخر كشف
+                        if (!result.detections.isEmpty()) {
+                            lastDetectionTime = System.currentTimeMillis();
+                        }
+                        
+                        if (detectionExport != null) {
+                            detectionExport.publish(result, exportedFrames++, timestamp);
+                        }
+                        
+                        perfMonitor.stageStart(PerformanceMonitor.STAGE_OVERLAY);
+                        updateOverlay(result, bitmap);
+                        perfMonitor.stageEnd(PerformanceMonitor.STAGE_OVERLAY);
+                        perfMonitor.endFrameAllocation();
+                        
+                        trackMemory(bitmap);
+                        updateStats(result, elapsed);
+                        
+                        // ✅ جدولة فحص الإخفاء
+                        mainHandler.removeCallbacks(hideOverlayRunnable);
+                        mainHandler.postDelayed(hideOverlayRunnable, HIDE_TIMEOUT);
+                    } catch (InferenceCancelledException e) {
+                        // ✅ أُلغي لصالح إطار أحدث؛ الـ overlay يبقى على آخر نتيجة حتى يصل الكشف الجديد.
+                        // مقدّر التمرير استهلك هذا الإطار وإزاحته ضاعت: الإطار التالي كشف كامل
+                        scrollEstimator.reset();
+                        lastRawResult = null;
+                        Log.d(TAG, "Stale inference cancelled");
+                    } finally {
+                        bitmap.recycle();
                     }
-                    
-                    updateOverlay(result, bitmap.getWidth(), bitmap.getHeight());
-                    updateStats(result, elapsed);
-                    
-                    // ✅ جدولة فحص الإخفاء
-                    mainHandler.removeCallbacks(hideOverlayRunnable);
-                    mainHandler.postDelayed(hideOverlayRunnable, HIDE_TIMEOUT);
-                    
-                    bitmap.recycle();
                 }
                 
             } catch (Exception e) {
                 Log.e(TAG, "Process error", e);
             } finally {
                 image.close();
+                frameChange.clear();
                 isProcessing.set(false);
             }
         });
     }
     
+    /**
+     * ✅ كشف مع تعويض التمرير: عند تمرير صافٍ تُزاح الصناديق السابقة، ويُكشف الشريط الجديد فقط حين يتراكم بما يكفي
+     */
+    private DetectionResult detectFrame(Bitmap bitmap) {
+        // ✅ منطقة المحتوى فقط (بدون letterbox وأشرطة النظام الثابتة)
+        Rect content = contentArea.update(bitmap);
+        boolean scrolled = scrollEstimator.update(bitmap);
+        
+        DetectionResult result = null;
+        if (scrolled && lastRawResult != null && compensatedFrames < MAX_COMPENSATED_FRAMES) {
+            result = compensateScroll(
+                bitmap, content, lastRawResult, scrollEstimator.getShiftX(), scrollEstimator.getShiftY()
+            );
+        }
+        
+        if (result == null) {
+            result = detector.detect(bitmap, content);
+            compensatedFrames = 0;
+            exposedX = 0;
+            exposedY = 0;
+        } else {
+            compensatedFrames++;
+        }
+        
+        result = contentArea.filter(result);
+        lastRawResult = result;
+        return result;
+    }
+    
+    private DetectionResult compensateScroll(
+            Bitmap bitmap, Rect content, DetectionResult previous,
+            int dx, int dy) {
+        
+        if (previous.imageWidth != bitmap.getWidth() || previous.imageHeight != bitmap.getHeight()) {
+            return null;
+        }
+        
+        // تغيّر المحور أو الاتجاه: ما يظهر من الطرف الآخر فقدت صناديقه عند خروجها، فكشف كامل
+        if (dy != 0 ? exposedX != 0 || exposedY * dy < 0 : exposedY != 0 || exposedX * dx < 0) {
+            return null;
+        }
+        
+        Rect bounds = content != null ? content : new Rect(0, 0, bitmap.getWidth(), bitmap.getHeight());
+        int along = dy != 0 ? bounds.height() : bounds.width();
+        int across = dy != 0 ? bounds.width() : bounds.height();
+        int exposed = Math.abs(dy != 0 ? exposedY + dy : exposedX + dx);
+        if (exposed > along / 2) return null;
+        
+        exposedX += dx;
+        exposedY += dy;
+        
+        // ✅ الشريط المكشوف أضيق من أن يستحق تشغيلاً كاملاً للنموذج: إزاحة الصناديق فقط بلا استدلال
+        if (exposed < Math.min(across * SCROLL_STRIP_FRACTION, along / 4f)) {
+            smoother.shift(dx, dy);
+            return previous.translate(dx, dy);
+        }
+        
+        // الشريط المتراكم مع هامش تداخل؛ يُحشى في إدخال النموذج بنسبة أبعاده بدل مطّه إلى مربع،
+        // فيعمل في الوضعين العمودي والأفقي
+        int stripSize = Math.min(exposed + SCROLL_OVERLAP, along);
+        Rect strip;
+        if (dy != 0) {
+            strip = exposedY < 0
+                ? new Rect(bounds.left, bounds.bottom - stripSize, bounds.right, bounds.bottom)
+                : new Rect(bounds.left, bounds.top, bounds.right, bounds.top + stripSize);
+        } else {
+            strip = exposedX < 0
+                ? new Rect(bounds.right - stripSize, bounds.top, bounds.right, bounds.bottom)
+                : new Rect(bounds.left, bounds.top, bounds.left + stripSize, bounds.bottom);
+        }
+        
+        // إزاحة تاريخ المنعّم فقط بعد اكتمال كشف الشريط: الإلغاء هنا يترك التاريخ بلا إزاحة لم تُطبَّق
+        DetectionResult fresh = detector.detect(bitmap, strip, true);
+        smoother.shift(dx, dy);
+        exposedX = 0;
+        exposedY = 0;
+        
+        return ScrollEstimator.merge(previous.translate(dx, dy), fresh, strip);
+    }
+    
     /**
      * ✅ إخفاء overlay إذا لم يكن هناك كشف لفترة
      */
@@ -344,20 +717,22 @@ public class OverlayService extends Service {
     private Bitmap imageToBitmap(Image image) {
         Image.Plane[] planes = image.getPlanes();
         ByteBuffer buffer = planes[0].getBuffer();
+        int width = image.getWidth();
+        int height = image.getHeight();
         int pixelStride = planes[0].getPixelStride();
         int rowStride = planes[0].getRowStride();
-        int rowPadding = rowStride - pixelStride * screenWidth;
+        int rowPadding = rowStride - pixelStride * width;
         
         Bitmap bitmap = Bitmap.createBitmap(
-            screenWidth + rowPadding / pixelStride,
-            screenHeight,
+            width + rowPadding / pixelStride,
+            height,
             Bitmap.Config.ARGB_8888
         );
         
         bitmap.copyPixelsFromBuffer(buffer);
         
         if (rowPadding != 0) {
-            Bitmap cropped = Bitmap.createBitmap(bitmap, 0, 0, screenWidth, screenHeight);
+            Bitmap cropped = Bitmap.createBitmap(bitmap, 0, 0, width, height);
             bitmap.recycle();
             return cropped;
         }
@@ -365,10 +740,26 @@ public class OverlayService extends Service {
         return bitmap;
     }
     
+    private void trackMemory(Bitmap frame) {
+        memoryBudget.track("captureFrame", frame.getByteCount());
+        synchronized (overlayLock) {
+            memoryBudget.track("overlay", overlayBitmap != null ? overlayBitmap.getByteCount() : 0);
+        }
+        memoryBudget.track("detectorBuffers", detector.getBufferBytes());
+        memoryBudget.track("resultCache", detector.getResultCache().getCurrentBytes());
+        memoryBudget.track("censor", censorRenderer.getBufferBytes());
+        memoryBudget.evaluate();
+    }
+    
     /**
      * ✅ تحديث overlay مع النمط المخصص
      */
-    private void updateOverlay(OptimizedAnimeDetector.DetectionResult result, int w, int h) {
+    private void updateOverlay(DetectionResult result, Bitmap frame) {
+        // ✅ تحت ضغط الذاكرة يُرسم الـ overlay بدقة أقل ويكبّره الـ ImageView (fitXY)
+        float scale = overlayScale;
+        int w = Math.max(1, Math.round(frame.getWidth() * scale));
+        int h = Math.max(1, Math.round(frame.getHeight() * scale));
+        
         synchronized (overlayLock) {
             if (overlayBitmap == null || overlayBitmap.getWidth() != w || 
                 overlayBitmap.getHeight() != h || overlayBitmap.isRecycled()) {
@@ -384,18 +775,12 @@ public class OverlayService extends Service {
             // ✅ مسح الـ canvas بالكامل أولاً
             canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
             
-            // ✅ رسم المربعات بالنمط المخصص
+            // ✅ رسم المربعات بالوضع المختار (الفسيفساء/التمويه تُحسب من الإطار الملتقط نفسه)
             if (!result.detections.isEmpty()) {
-                for (OptimizedAnimeDetector.Detection det : result.detections) {
-                    float margin = Math.min(det.width, det.height) * 0.05f;
-                    
-                    // رسم بالنمط المخصص (أسود كامل مع texture)
-                    canvas.drawRect(
-                        det.x1 - margin, det.y1 - margin,
-                        det.x2 + margin, det.y2 + margin,
-                        censorPaint
-                    );
-                }
+                canvas.save();
+                canvas.scale((float) w / frame.getWidth(), (float) h / frame.getHeight());
+                censorRenderer.draw(canvas, frame, result.detections);
+                canvas.restore();
             }
             
             mainHandler.post(() -> {
@@ -406,16 +791,31 @@ public class OverlayService extends Service {
         }
     }
     
-    private void updateStats(OptimizedAnimeDetector.DetectionResult result, long elapsed) {
+    private void updateStats(DetectionResult result, long elapsed) {
+        // ✅ نتيجة المنعّم تُعاد تعبئتها بعد إطارين: القيم تُلتقط هنا لا على الخيط الرئيسي
+        final int count = result.detections.size();
+        final float avgConfidence = result.avgConfidence;
         mainHandler.post(() -> {
             if (statsText != null) {
                 String stats = String.format(
-                    "🎯 %d | ⚡%dms | 📊%.0f%% | FPS:%.1f",
-                    result.detections.size(),
+                    "🎯 %d | ⚡%dms | 📊%.0f%% | FPS:%.1f | 💾%.0f%%",
+                    count,
                     elapsed,
-                    result.avgConfidence * 100,
-                    perfMonitor.getCurrentFPS()
+                    avgConfidence * 100,
+                    perfMonitor.getCurrentFPS(),
+                    detector.getResultCache().getHitRate() * 100
                 );
+                PresenceGate gate = detector.getPresenceGate();
+                if (gate != null) {
+                    stats += String.format(" | 🚪%.0f%%", gate.getPassRate() * 100);
+                }
+                stats += " | ✂️" + detector.getCancelledRuns();
+                stats += String.format(" | 🧩%.0f%%", detector.getConvertedTileFraction() * 100);
+                stats += " | 🎞️" + cadence.summary();
+                stats += " | 🧠" + memoryBudget.summary();
+                if (perfMonitor.isAllocationTracking()) {
+                    stats += " | 🗑️" + perfMonitor.allocationSummary();
+                }
                 statsText.setText(stats);
             }
         });
@@ -446,8 +846,16 @@ public class OverlayService extends Service {
         if (patternBitmap != null && !patternBitmap.isRecycled()) {
             patternBitmap.recycle();
         }
-        
-        if (detector != null) detector.close();
+        if (censorRenderer != null) censorRenderer.release();
+        if (allocCounters != null) allocCounters.stop();
+        
+        // ✅ الإغلاق على خيط الكشف نفسه: بعد انتهاء التهيئة أو الإطار الجاري
+        if (detectionHandler != null) {
+            detectionHandler.post(() -> {
+                if (detector != null) detector.close();
+                if (detectionExport != null) detectionExport.close();
+            });
+        }
         if (smoother != null) smoother.clear();
         
         if (captureThread != null) captureThread.quitSafely();
@@ -459,6 +867,7 @@ public class OverlayService extends Service {
     
     @Override
     public IBinder onBind(Intent intent) {
+        // ✅ الخدمة غير مُصدَّرة؛ العملاء يرتبطون بـ DetectionExportService
         return null;
     }
 }
@@ -1,16 +1,43 @@
 package com.animedetector;
 
-import java.util.LinkedList;
-import java.util.Queue;
-
 public class PerformanceMonitor {
     private static final int WINDOW = 30;
     
-    private final Queue<Long> frameTimes = new LinkedList<>();
-    private final Queue<Long> infTimes = new LinkedList<>();
+    public static final int STAGE_CONVERT = 0;
+    public static final int STAGE_DETECT = 1;
+    public static final int STAGE_SMOOTH = 2;
+    public static final int STAGE_OVERLAY = 3;
+    public static final int STAGE_COUNT = 4;
+    
+    private static final String[] STAGE_NAMES = {"convert", "detect", "smooth", "overlay"};
+    
+    private final long[] frameTimes = new long[WINDOW];
+    private final long[] infTimes = new long[WINDOW];
+    private int frameCursor;
+    private int frameSamples;
+    private int infCursor;
+    private int infSamples;
     private volatile long lastFrame;
     private final Object lock = new Object();
     
+    // ✅ تخصيصات وGC لكل إطار في مصفوفات دائرية بدائية: القياس نفسه لا يخصّص شيئاً
+    private volatile AllocationCounters counters = AllocationCounters.NONE;
+    private final long[] frameBytes = new long[WINDOW];
+    private final long[] frameGcCount = new long[WINDOW];
+    private final long[] frameGcMillis = new long[WINDOW];
+    private final long[][] stageBytes = new long[STAGE_COUNT][WINDOW];
+    private final long[] stageStartBytes = new long[STAGE_COUNT];
+    private final long[] currentStageBytes = new long[STAGE_COUNT];
+    private long allocStartBytes;
+    private long allocStartGcCount;
+    private long allocStartGcMillis;
+    private int allocCursor;
+    private int allocSamples;
+    private long allocFrames;
+    private long allocationFreeFrames;
+    private long totalGcCount;
+    private long totalGcMillis;
+    
     public PerformanceMonitor() {
         lastFrame = System.currentTimeMillis();
     }
@@ -18,35 +45,184 @@ public class PerformanceMonitor {
     public void frameStart() {
         long now = System.currentTimeMillis();
         synchronized (lock) {
-            frameTimes.offer(now - lastFrame);
+            frameTimes[frameCursor] = now - lastFrame;
+            frameCursor = (frameCursor + 1) % WINDOW;
+            if (frameSamples < WINDOW) frameSamples++;
             lastFrame = now;
-            while (frameTimes.size() > WINDOW) frameTimes.poll();
         }
     }
     
     public void frameEnd(long inf) {
         synchronized (lock) {
-            infTimes.offer(inf);
-            while (infTimes.size() > WINDOW) infTimes.poll();
+            infTimes[infCursor] = inf;
+            infCursor = (infCursor + 1) % WINDOW;
+            if (infSamples < WINDOW) infSamples++;
         }
     }
     
     public float getCurrentFPS() {
         synchronized (lock) {
-            if (frameTimes.isEmpty()) return 0f;
-            long total = 0;
-            for (Long t : frameTimes) total += t;
-            float avg = (float) total / frameTimes.size();
+            if (frameSamples == 0) return 0f;
+            float avg = average(frameTimes, frameSamples);
             return avg > 0 ? 1000f / avg : 0f;
         }
     }
     
     public float getAvgInference() {
         synchronized (lock) {
-            if (infTimes.isEmpty()) return 0f;
-            long total = 0;
-            for (Long t : infTimes) total += t;
-            return (float) total / infTimes.size();
+            return average(infTimes, infSamples);
+        }
+    }
+    
+    /**
+     * تفعيل قياس التخصيصات؛ NONE يعطّله
+     */
+    public void setAllocationCounters(AllocationCounters counters) {
+        this.counters = counters != null ? counters : AllocationCounters.NONE;
+    }
+    
+    public boolean isAllocationTracking() {
+        return counters.threadAllocatedBytes() >= 0;
+    }
+    
+    /**
+     * يُستدعى على خيط المعالجة نفسه: العدادات لكل خيط.
+     * إحصاءات GC تُقرأ قبل البايتات هنا وبعدها في النهاية حتى لا تُحسب تخصيصات القياس على الإطار
+     */
+    public void beginFrameAllocation() {
+        AllocationCounters c = counters;
+        if (c == AllocationCounters.NONE) return;
+        
+        allocStartGcCount = c.gcCount();
+        allocStartGcMillis = c.gcTimeMillis();
+        for (int s = 0; s < STAGE_COUNT; s++) currentStageBytes[s] = 0;
+        allocStartBytes = c.threadAllocatedBytes();
+    }
+    
+    public void endFrameAllocation() {
+        AllocationCounters c = counters;
+        if (c == AllocationCounters.NONE) return;
+        
+        long bytes = c.threadAllocatedBytes() - allocStartBytes;
+        long gcCount = c.gcCount() - allocStartGcCount;
+        long gcMillis = c.gcTimeMillis() - allocStartGcMillis;
+        
+        synchronized (lock) {
+            int i = allocCursor;
+            frameBytes[i] = bytes;
+            frameGcCount[i] = gcCount;
+            frameGcMillis[i] = gcMillis;
+            for (int s = 0; s < STAGE_COUNT; s++) stageBytes[s][i] = currentStageBytes[s];
+            allocCursor = (i + 1) % WINDOW;
+            if (allocSamples < WINDOW) allocSamples++;
+            
+            allocFrames++;
+            if (bytes == 0) allocationFreeFrames++;
+            totalGcCount += gcCount;
+            totalGcMillis += gcMillis;
+        }
+    }
+    
+    public void stageStart(int stage) {
+        AllocationCounters c = counters;
+        if (c == AllocationCounters.NONE) return;
+        stageStartBytes[stage] = c.threadAllocatedBytes();
+    }
+    
+    public void stageEnd(int stage) {
+        AllocationCounters c = counters;
+        if (c == AllocationCounters.NONE) return;
+        currentStageBytes[stage] += c.threadAllocatedBytes() - stageStartBytes[stage];
+    }
+    
+    public float getAvgFrameBytes() {
+        synchronized (lock) {
+            return average(frameBytes, allocSamples);
+        }
+    }
+    
+    public long getMaxFrameBytes() {
+        synchronized (lock) {
+            long max = 0;
+            for (int i = 0; i < allocSamples; i++) max = Math.max(max, frameBytes[i]);
+            return max;
+        }
+    }
+    
+    public float getAvgStageBytes(int stage) {
+        synchronized (lock) {
+            return average(stageBytes[stage], allocSamples);
+        }
+    }
+    
+    /**
+     * أكبر تخصيص لمرحلة ضمن النافذة؛ 0 = المرحلة خالية من التخصيص في الحالة المستقرة
+     */
+    public long getMaxStageBytes(int stage) {
+        synchronized (lock) {
+            long max = 0;
+            for (int i = 0; i < allocSamples; i++) max = Math.max(max, stageBytes[stage][i]);
+            return max;
+        }
+    }
+    
+    public float getAvgGcCount() {
+        synchronized (lock) {
+            return average(frameGcCount, allocSamples);
+        }
+    }
+    
+    public float getAvgGcMillis() {
+        synchronized (lock) {
+            return average(frameGcMillis, allocSamples);
+        }
+    }
+    
+    public long getTotalGcCount() {
+        synchronized (lock) {
+            return totalGcCount;
+        }
+    }
+    
+    public long getTotalGcMillis() {
+        synchronized (lock) {
+            return totalGcMillis;
         }
     }
+    
+    public long getAllocationFreeFrames() {
+        synchronized (lock) {
+            return allocationFreeFrames;
+        }
+    }
+    
+    public long getAllocationFrames() {
+        synchronized (lock) {
+            return allocFrames;
+        }
+    }
+    
+    public static String stageName(int stage) {
+        return STAGE_NAMES[stage];
+    }
+    
+    public String allocationSummary() {
+        synchronized (lock) {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format("%.1fKB/f", average(frameBytes, allocSamples) / 1024f));
+            for (int s = 0; s < STAGE_COUNT; s++) {
+                sb.append(' ').append(STAGE_NAMES[s].charAt(0))
+                    .append(String.format("%.1f", average(stageBytes[s], allocSamples) / 1024f));
+            }
+            sb.append(String.format(" GC:%d/%dms", totalGcCount, totalGcMillis));
+            return sb.toString();
+        }
+    }
+    
+    private static float average(long[] values, int samples) {
+        if (samples == 0) return 0f;
+        long total = 0;
+        for (int i = 0; i < samples; i++) total += values[i];
+        return (float) total / samples;
+    }
 }
@@ -0,0 +1,431 @@
+package com.animedetector;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * ✅ تحويل ARGB إلى مستويات NCHW عبر جدول تطبيع من 256 قيمة، مقسّم على أشرطة صفوف متوازية.
+ * للنماذج ذات الإدخال uint8 NHWC: تعبئة RGB مضغوطة فقط والتطبيع داخل رسم النموذج.
+ * الوضع التزايدي يعيد كتابة المربعات التي تغيّرت بين إطارين فقط في مخزن الإدخال الدائم.
+ */
+public class PreprocessKernel {
+    private final int width;
+    private final int height;
+    private final int planeSize;
+    private final float[] lutR = new float[256];
+    private final float[] lutG = new float[256];
+    private final float[] lutB = new float[256];
+    private final float[] mean;
+    private final float[] std;
+    private final ArrayKernels kernels = Kernels.get();
+
+    // ✅ عمال دائمون ينتظرون رقم جيل جديد بدل invokeAll (FutureTask وقائمة لكل إطار):
+    // المستدعي ينفّذ الشريط 0 بنفسه ثم ينتظر البقية، فلا تخصيص في الحالة المستقرة
+    private final List<Callable<Void>> stripes;
+    private final Thread[] workerThreads;
+    private final AtomicInteger pendingStripes = new AtomicInteger();
+    private volatile int generation;
+    private volatile boolean stopped;
+    private volatile Thread waiter;
+    private volatile Throwable stripeFailure;
+
+    private int[] srcPixels;
+    private FloatBuffer boundBuffer;
+    private final FloatBuffer[] views;
+    private ByteBuffer boundBytes;
+    private final ByteBuffer[] byteViews;
+    private boolean packing;
+
+    // ✅ الوضع التزايدي: بصمة 64-bit لكل مربع TILE×TILE من الإطار المحجَّم السابق
+    private static final int TILE = 32;
+    private static final int FULL_REFRESH_INTERVAL = 120;
+    private static final long HASH_SEED = 0xcbf29ce484222325L;
+    private static final long HASH_PRIME = 0x100000001b3L;
+
+    private final int tileCols;
+    private final int tileRows;
+    private final long[] tileHashes;
+    private final long[] newHashes;
+    private final boolean[] dirty;
+    private Object incrementalTarget;
+    private boolean incremental;
+    private int framesSinceRefresh;
+    private int lastChangedTiles;
+    private long tilesConverted;
+    private long tilesTotal;
+
+    public PreprocessKernel(int width, int height, int workers) {
+        this(width, height, workers, new float[] {0f, 0f, 0f}, new float[] {1f, 1f, 1f});
+    }
+
+    /**
+     * القيمة الناتجة = (p / 255 - mean) / std لكل قناة؛ مع mean=0 و std=1 تطابق المسار القديم بتاً ببت
+     */
+    public PreprocessKernel(int width, int height, int workers, float[] mean, float[] std) {
+        this.width = width;
+        this.height = height;
+        this.planeSize = width * height;
+        this.mean = mean.clone();
+        this.std = std.clone();
+        this.tileCols = (width + TILE - 1) / TILE;
+        this.tileRows = (height + TILE - 1) / TILE;
+        this.tileHashes = new long[tileCols * tileRows];
+        this.newHashes = new long[tileCols * tileRows];
+        this.dirty = new boolean[tileCols * tileRows];
+
+        final float inv255 = 1.0f / 255.0f;
+        for (int i = 0; i < 256; i++) {
+            float v = i * inv255;
+            lutR[i] = (v - mean[0]) / std[0];
+            lutG[i] = (v - mean[1]) / std[1];
+            lutB[i] = (v - mean[2]) / std[2];
+        }
+
+        int stripeCount = Math.max(1, Math.min(workers, height));
+        this.views = new FloatBuffer[stripeCount];
+        this.byteViews = new ByteBuffer[stripeCount];
+        this.stripes = new ArrayList<>(stripeCount);
+
+        int rowsPerStripe = (height + stripeCount - 1) / stripeCount;
+        for (int s = 0; s < stripeCount; s++) {
+            final int index = s;
+            final int startRow = s * rowsPerStripe;
+            final int endRow = Math.min(height, startRow + rowsPerStripe);
+            final float[] rowR = new float[width];
+            final float[] rowG = new float[width];
+            final float[] rowB = new float[width];
+            final byte[] rowRgb = new byte[width * 3];
+            stripes.add(() -> {
+                if (incremental) {
+                    if (packing) {
+                        packDirtyRows(byteViews[index], startRow, endRow, rowRgb);
+                    } else {
+                        convertDirtyRows(views[index], startRow, endRow, rowR, rowG, rowB);
+                    }
+                } else if (packing) {
+                    packRows(byteViews[index], startRow, endRow, rowRgb);
+                } else {
+                    convertRows(views[index], startRow, endRow, rowR, rowG, rowB);
+                }
+                return null;
+            });
+        }
+
+        this.workerThreads = new Thread[stripeCount - 1];
+        for (int w = 0; w < workerThreads.length; w++) {
+            final int stripe = w + 1;
+            workerThreads[w] = new Thread(() -> workerLoop(stripe), "PreprocessWorker");
+            workerThreads[w].setDaemon(true);
+            workerThreads[w].start();
+        }
+    }
+
+    /**
+     * عدد العمال المناسب: الأنوية الكبيرة تقريباً (نصف الأنوية، بحد أقصى 4)
+     */
+    public static int defaultWorkers() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        return Math.max(1, Math.min(4, cores / 2));
+    }
+
+    /**
+     * يكتب المستويات الثلاثة في out بدءاً من الموضع 0؛ لا يغيّر position/limit الخاصة بـ out
+     */
+    public synchronized void convert(int[] pixels, FloatBuffer out) {
+        bindFloat(out);
+        if (out == incrementalTarget) incrementalTarget = null;
+        srcPixels = pixels;
+        packing = false;
+
+        try {
+            runStripes();
+        } finally {
+            srcPixels = null;
+        }
+    }
+
+    /**
+     * مثل convert لكن out مخزن دائم يحمل تحويل الإطار السابق: تُكتب فقط المربعات التي تغيّرت بصمتها.
+     * يعيد عدد المربعات المكتوبة. أول استدعاء لمخزن جديد، وكل FULL_REFRESH_INTERVAL إطار، تحويل كامل
+     */
+    public synchronized int convertIncremental(int[] pixels, FloatBuffer out) {
+        bindFloat(out);
+        return runIncremental(pixels, out, false);
+    }
+
+    /**
+     * النظير التزايدي لـ packRgb
+     */
+    public synchronized int packRgbIncremental(int[] pixels, ByteBuffer out) {
+        bindBytes(out);
+        return runIncremental(pixels, out, true);
+    }
+
+    /**
+     * محتوى المخزن الدائم لم يعد يطابق البصمات (كُتب من خارج النواة)؛ الإطار التالي تحويل كامل
+     */
+    public synchronized void invalidate() {
+        incrementalTarget = null;
+    }
+
+    private int runIncremental(int[] pixels, Object out, boolean pack) {
+        boolean full = out != incrementalTarget || ++framesSinceRefresh >= FULL_REFRESH_INTERVAL;
+
+        int changed = hashTiles(pixels, full);
+        lastChangedTiles = changed;
+        tilesConverted += changed;
+        tilesTotal += dirty.length;
+        if (changed == 0) return 0;
+
+        srcPixels = pixels;
+        packing = pack;
+        // الإطار كله تغيّر: المسار الكامل أسرع من فحص dirty لكل مربع
+        incremental = changed < dirty.length;
+        // المخزن في حالة غير معروفة إذا فشل التحويل في منتصفه
+        incrementalTarget = null;
+
+        try {
+            runStripes();
+            incrementalTarget = out;
+            if (full) framesSinceRefresh = 0;
+        } finally {
+            srcPixels = null;
+            incremental = false;
+        }
+        return changed;
+    }
+
+    /**
+     * FNV-1a على بكسلات كل مربع؛ تمريرة قراءة واحدة أرخص بكثير من التطبيع والكتابة في المخزن المباشر
+     */
+    private int hashTiles(int[] pixels, boolean full) {
+        Arrays.fill(newHashes, HASH_SEED);
+
+        for (int y = 0; y < height; y++) {
+            int rowBase = (y / TILE) * tileCols;
+            int base = y * width;
+            for (int tc = 0; tc < tileCols; tc++) {
+                int x0 = tc * TILE;
+                int x1 = Math.min(width, x0 + TILE);
+                long h = newHashes[rowBase + tc];
+                for (int x = x0; x < x1; x++) {
+                    h = (h ^ pixels[base + x]) * HASH_PRIME;
+                }
+                newHashes[rowBase + tc] = h;
+            }
+        }
+
+        int changed = 0;
+        for (int t = 0; t < dirty.length; t++) {
+            dirty[t] = full || newHashes[t] != tileHashes[t];
+            if (dirty[t]) changed++;
+            tileHashes[t] = newHashes[t];
+        }
+        return changed;
+    }
+
+    private void bindFloat(FloatBuffer out) {
+        if (out != boundBuffer) {
+            for (int s = 0; s < views.length; s++) views[s] = out.duplicate();
+            boundBuffer = out;
+        }
+    }
+
+    private void bindBytes(ByteBuffer out) {
+        if (out != boundBytes) {
+            for (int s = 0; s < byteViews.length; s++) byteViews[s] = out.duplicate();
+            boundBytes = out;
+        }
+    }
+
+    /**
+     * يكتب RGB مضغوطاً (NHWC، بايت لكل قناة) في out بدءاً من الموضع 0: ربع حجم المستويات العائمة
+     */
+    public synchronized void packRgb(int[] pixels, ByteBuffer out) {
+        bindBytes(out);
+        if (out == incrementalTarget) incrementalTarget = null;
+        srcPixels = pixels;
+        packing = true;
+
+        try {
+            runStripes();
+        } finally {
+            srcPixels = null;
+        }
+    }
+
+    private void runStripes() {
+        if (workerThreads.length == 0) {
+            runOwnStripe();
+            return;
+        }
+        if (stopped) throw new IllegalStateException("Preprocessing kernel shut down");
+
+        stripeFailure = null;
+        waiter = Thread.currentThread();
+        pendingStripes.set(workerThreads.length);
+        // الكتابة المتطايرة تنشر srcPixels والأعلام للعمال
+        generation++;
+        for (Thread worker : workerThreads) LockSupport.unpark(worker);
+
+        RuntimeException own = null;
+        try {
+            runOwnStripe();
+        } catch (RuntimeException e) {
+            own = e;
+        }
+
+        // العمال يكتبون في مخزن المستدعي: الانتظار حتى النهاية حتى مع المقاطعة
+        boolean interrupted = false;
+        while (pendingStripes.get() != 0) {
+            LockSupport.park(this);
+            if (Thread.interrupted()) interrupted = true;
+        }
+        waiter = null;
+
+        if (own != null) throw own;
+        if (stripeFailure != null) throw new IllegalStateException("Preprocessing failed", stripeFailure);
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Preprocessing interrupted");
+        }
+    }
+
+    private void runOwnStripe() {
+        try {
+            stripes.get(0).call();
+        } catch (Exception e) {
+            throw new IllegalStateException("Preprocessing failed", e);
+        }
+    }
+
+    private void workerLoop(int stripe) {
+        int seen = 0;
+        while (true) {
+            int current;
+            while ((current = generation) == seen) {
+                if (stopped) return;
+                LockSupport.park(this);
+            }
+            seen = current;
+
+            try {
+                stripes.get(stripe).call();
+            } catch (Throwable t) {
+                stripeFailure = t;
+            }
+            if (pendingStripes.decrementAndGet() == 0) LockSupport.unpark(waiter);
+        }
+    }
+
+    private void convertRows(FloatBuffer view, int startRow, int endRow,
+                             float[] rowR, float[] rowG, float[] rowB) {
+        final int[] pixels = srcPixels;
+
+        for (int h = startRow; h < endRow; h++) {
+            int base = h * width;
+            kernels.convertRow(pixels, base, width, mean, std, lutR, lutG, lutB, rowR, rowG, rowB, 0);
+
+            view.position(base);
+            view.put(rowR);
+            view.position(planeSize + base);
+            view.put(rowG);
+            view.position(2 * planeSize + base);
+            view.put(rowB);
+        }
+    }
+
+    private void packRows(ByteBuffer view, int startRow, int endRow, byte[] rowRgb) {
+        final int[] pixels = srcPixels;
+
+        for (int h = startRow; h < endRow; h++) {
+            int base = h * width;
+            for (int w = 0, i = 0; w < width; w++, i += 3) {
+                int pixel = pixels[base + w];
+                rowRgb[i] = (byte) (pixel >> 16);
+                rowRgb[i + 1] = (byte) (pixel >> 8);
+                rowRgb[i + 2] = (byte) pixel;
+            }
+
+            view.position(base * 3);
+            view.put(rowRgb);
+        }
+    }
+
+    /**
+     * نفس convertRows لكن لمقاطع المربعات المتغيّرة فقط من كل صف
+     */
+    private void convertDirtyRows(FloatBuffer view, int startRow, int endRow,
+                                  float[] rowR, float[] rowG, float[] rowB) {
+        final int[] pixels = srcPixels;
+
+        for (int h = startRow; h < endRow; h++) {
+            int base = h * width;
+            int rowBase = (h / TILE) * tileCols;
+            for (int tc = 0; tc < tileCols; tc++) {
+                if (!dirty[rowBase + tc]) continue;
+                int x0 = tc * TILE;
+                int x1 = Math.min(width, x0 + TILE);
+                kernels.convertRow(pixels, base + x0, x1 - x0, mean, std, lutR, lutG, lutB,
+                    rowR, rowG, rowB, x0);
+
+                int len = x1 - x0;
+                view.position(base + x0);
+                view.put(rowR, x0, len);
+                view.position(planeSize + base + x0);
+                view.put(rowG, x0, len);
+                view.position(2 * planeSize + base + x0);
+                view.put(rowB, x0, len);
+            }
+        }
+    }
+
+    private void packDirtyRows(ByteBuffer view, int startRow, int endRow, byte[] rowRgb) {
+        final int[] pixels = srcPixels;
+
+        for (int h = startRow; h < endRow; h++) {
+            int base = h * width;
+            int rowBase = (h / TILE) * tileCols;
+            for (int tc = 0; tc < tileCols; tc++) {
+                if (!dirty[rowBase + tc]) continue;
+                int x0 = tc * TILE;
+                int x1 = Math.min(width, x0 + TILE);
+                for (int w = x0, i = x0 * 3; w < x1; w++, i += 3) {
+                    int pixel = pixels[base + w];
+                    rowRgb[i] = (byte) (pixel >> 16);
+                    rowRgb[i + 1] = (byte) (pixel >> 8);
+                    rowRgb[i + 2] = (byte) pixel;
+                }
+
+                view.position((base + x0) * 3);
+                view.put(rowRgb, x0 * 3, (x1 - x0) * 3);
+            }
+        }
+    }
+
+    public synchronized int getLastChangedTiles() {
+        return lastChangedTiles;
+    }
+
+    public int getTileCount() {
+        return dirty.length;
+    }
+
+    /**
+     * نسبة المربعات المكتوبة فعلاً في الوضع التزايدي؛ 1 = لا توفير
+     */
+    public synchronized float getConvertedTileFraction() {
+        return tilesTotal == 0 ? 1f : (float) tilesConverted / tilesTotal;
+    }
+
+    public void shutdown() {
+        stopped = true;
+        for (Thread worker : workerThreads) LockSupport.unpark(worker);
+    }
+}
@@ -0,0 +1,164 @@
+package com.animedetector;
+
+import android.graphics.Bitmap;
+import android.graphics.Matrix;
+import android.graphics.Rect;
+
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Collections;
+
+/**
+ * ✅ المرحلة الأولى من الـ cascade: مصنّف صغير يقرر إن كان هناك محتوى يستحق تشغيل الكاشف الكامل
+ */
+public class PresenceGate {
+    /**
+     * ما يخرجه النموذج: احتمالات جاهزة أو logits تحتاج sigmoid (قيمة واحدة) أو softmax (فئتان)
+     */
+    public enum Output {
+        PROBABILITY,
+        LOGIT
+    }
+
+    private final OrtEnvironment env;
+    private final OrtSession session;
+    private final String inputName;
+    private final int inputSize;
+    private final float threshold;
+    private final Output outputType;
+    private final int refreshInterval;
+
+    private final FloatBuffer floatView;
+    private final int[] pixelBuffer;
+    private final PreprocessKernel kernel;
+
+    private int rejectsSinceRun;
+
+    private long runs;
+    private long passes;
+    private long rejects;
+    private long safetyRefreshes;
+
+    /**
+     * @param threshold       عتبة على احتمال الحضور (0-1) بعد التحويل حسب outputType
+     * @param outputType      نوع المخرج محدد صراحة: القيمة وحدها لا تميّز logit بين 0 و1 عن احتمال
+     * @param refreshInterval بعد هذا العدد من الرفض المتتالي يُشغَّل الكاشف الكامل احتياطياً
+     */
+    public PresenceGate(OrtEnvironment env, byte[] modelBytes, OrtSession.SessionOptions options,
+                        int inputSize, float threshold, Output outputType,
+                        int refreshInterval) throws OrtException {
+        this.env = env;
+        this.session = env.createSession(modelBytes, options);
+        this.inputName = session.getInputNames().iterator().next();
+        this.inputSize = inputSize;
+        this.threshold = threshold;
+        this.outputType = outputType;
+        this.refreshInterval = refreshInterval;
+
+        this.floatView = ByteBuffer.allocateDirect(3 * inputSize * inputSize * Float.BYTES)
+            .order(ByteOrder.nativeOrder())
+            .asFloatBuffer();
+        this.pixelBuffer = new int[inputSize * inputSize];
+        this.kernel = new PreprocessKernel(inputSize, inputSize, 1);
+    }
+
+    /**
+     * true إذا يجب تشغيل الكاشف الكامل على هذا الإطار
+     */
+    public synchronized boolean admit(Bitmap bitmap, Rect region) throws OrtException {
+        runs++;
+
+        float score = score(bitmap, region);
+        if (score >= threshold) {
+            passes++;
+            rejectsSinceRun = 0;
+            return true;
+        }
+
+        rejects++;
+        if (++rejectsSinceRun >= refreshInterval) {
+            safetyRefreshes++;
+            rejectsSinceRun = 0;
+            return true;
+        }
+        return false;
+    }
+
+    private float score(Bitmap bitmap, Rect region) throws OrtException {
+        Bitmap resized;
+        if (region == null) {
+            resized = Bitmap.createScaledBitmap(bitmap, inputSize, inputSize, true);
+        } else {
+            Matrix scale = new Matrix();
+            scale.setScale((float) inputSize / region.width(), (float) inputSize / region.height());
+            resized = Bitmap.createBitmap(
+                bitmap, region.left, region.top, region.width(), region.height(), scale, true
+            );
+        }
+        resized.getPixels(pixelBuffer, 0, inputSize, 0, 0, inputSize, inputSize);
+        if (resized != bitmap) resized.recycle();
+
+        kernel.convert(pixelBuffer, floatView);
+        floatView.position(0);
+
+        long[] shape = {1, 3, inputSize, inputSize};
+        try (OnnxTensor tensor = OnnxTensor.createTensor(env, floatView, shape);
+             OrtSession.Result result = session.run(Collections.singletonMap(inputName, tensor))) {
+
+            float[][] output = (float[][]) result.get(0).getValue();
+            return presenceProbability(output[0]);
+        }
+    }
+
+    /**
+     * [1][1] حضور فقط، [1][N] فئات آخرها الحضور (عادة غياب، حضور)
+     */
+    private float presenceProbability(float[] values) {
+        int last = values.length - 1;
+        if (outputType == Output.PROBABILITY) return values[last];
+
+        if (values.length == 1) return (float) (1.0 / (1.0 + Math.exp(-values[0])));
+
+        // softmax مستقر عددياً: طرح الأكبر قبل exp
+        float max = values[0];
+        for (int i = 1; i < values.length; i++) max = Math.max(max, values[i]);
+        double sum = 0;
+        for (float v : values) sum += Math.exp(v - max);
+        return (float) (Math.exp(values[last] - max) / sum);
+    }
+
+    public synchronized long getRuns() {
+        return runs;
+    }
+
+    public synchronized long getPasses() {
+        return passes;
+    }
+
+    public synchronized long getRejects() {
+        return rejects;
+    }
+
+    public synchronized long getSafetyRefreshes() {
+        return safetyRefreshes;
+    }
+
+    public synchronized float getPassRate() {
+        return runs > 0 ? (float) (passes + safetyRefreshes) / runs : 1f;
+    }
+
+    public void close() {
+        kernel.shutdown();
+        try {
+            session.close();
+        } catch (OrtException e) {
+            // تجاهل: الجلسة تُغلق مع الخدمة
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.animedetector;
+
+/**
+ * ✅ التنفيذ العددي المرجعي لـ ArrayKernels: نفس الحلقات التي كانت داخل النواة والمفكك وNMS والمنعّم
+ */
+public final class ScalarKernels implements ArrayKernels {
+    public static final ScalarKernels INSTANCE = new ScalarKernels();
+
+    private ScalarKernels() {
+    }
+
+    @Override
+    public String name() {
+        return "scalar";
+    }
+
+    @Override
+    public void convertRow(int[] pixels, int offset, int length,
+                           float[] mean, float[] std, float[] lutR, float[] lutG, float[] lutB,
+                           float[] rowR, float[] rowG, float[] rowB, int rowOffset) {
+        for (int i = 0; i < length; i++) {
+            int pixel = pixels[offset + i];
+            rowR[rowOffset + i] = lutR[(pixel >> 16) & 0xFF];
+            rowG[rowOffset + i] = lutG[(pixel >> 8) & 0xFF];
+            rowB[rowOffset + i] = lutB[pixel & 0xFF];
+        }
+    }
+
+    @Override
+    public void argmaxUpdate(float[] src, int srcOffset, int length, float[] best, int[] bestClass, int classId) {
+        for (int i = 0; i < length; i++) {
+            float v = src[srcOffset + i];
+            if (v > best[i]) {
+                best[i] = v;
+                bestClass[i] = classId;
+            }
+        }
+    }
+
+    @Override
+    public int selectAbove(float[] values, int length, float threshold, int[] out) {
+        int count = 0;
+        for (int i = 0; i < length; i++) {
+            if (values[i] > threshold) out[count++] = i;
+        }
+        return count;
+    }
+
+    @Override
+    public void suppressOverlaps(float[] x1, float[] y1, float[] x2, float[] y2, float[] area, int[] classId,
+                                 boolean[] suppressed, int i, int n, float iouThreshold, boolean perClass) {
+        float ax1 = x1[i], ay1 = y1[i], ax2 = x2[i], ay2 = y2[i];
+        float areaA = area[i];
+        int cls = classId[i];
+
+        for (int j = i + 1; j < n; j++) {
+            if (suppressed[j]) continue;
+            if (perClass && cls != classId[j]) continue;
+
+            if (ax2 < x1[j] || x2[j] < ax1 || ay2 < y1[j] || y2[j] < ay1) continue;
+
+            float interX1 = Math.max(ax1, x1[j]);
+            float interY1 = Math.max(ay1, y1[j]);
+            float interX2 = Math.min(ax2, x2[j]);
+            float interY2 = Math.min(ay2, y2[j]);
+
+            float interArea = (interX2 - interX1) * (interY2 - interY1);
+            if (interArea <= 0) continue;
+
+            float unionArea = areaA + area[j] - interArea;
+            float iou = interArea / unionArea;
+
+            if (iou > iouThreshold) suppressed[j] = true;
+        }
+    }
+
+    @Override
+    public int selectWithin(float[] cx, float[] cy, int[] classId, int from, int to,
+                            float tx, float ty, int targetClass, float thresholdSq, int[] out, int maxOut) {
+        int count = 0;
+        for (int k = from; k < to && count < maxOut; k++) {
+            if (classId[k] != targetClass) continue;
+
+            float dx = cx[k] - tx;
+            float dy = cy[k] - ty;
+            float distSq = dx * dx + dy * dy;
+
+            if (distSq < thresholdSq) out[count++] = k;
+        }
+        return count;
+    }
+}
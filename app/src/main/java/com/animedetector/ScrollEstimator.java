@@ -0,0 +1,202 @@
+package com.animedetector;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ✅ تقدير الإزاحة الكلية (التمرير) بين إطارين متتاليين عبر مقاطع الصفوف والأعمدة
+ */
+public class ScrollEstimator {
+    private static final float MAX_MATCH_COST = 2.0f;
+    private static final float MIN_ZERO_COST_RATIO = 2.5f;
+    private static final float MIN_PROFILE_CONTRAST = 4.0f;
+    private static final float MERGE_IOU = 0.3f;
+
+    private final int profileWidth;
+    private final int profileHeight;
+    private final float maxShiftFraction;
+
+    private final int[] pixels;
+    private float[] rows;
+    private float[] cols;
+    private float[] prevRows;
+    private float[] prevCols;
+    private boolean hasPrevious;
+
+    private int frameWidth;
+    private int frameHeight;
+    private int shiftX;
+    private int shiftY;
+
+    public ScrollEstimator(int profileWidth, int profileHeight, float maxShiftFraction) {
+        this.profileWidth = profileWidth;
+        this.profileHeight = profileHeight;
+        this.maxShiftFraction = maxShiftFraction;
+        this.pixels = new int[profileWidth * profileHeight];
+        this.rows = new float[profileHeight];
+        this.cols = new float[profileWidth];
+        this.prevRows = new float[profileHeight];
+        this.prevCols = new float[profileWidth];
+    }
+
+    /**
+     * يحدّث المقاطع بالإطار الجديد ويعيد true إذا كانت الحركة تمريراً صافياً على محور واحد
+     */
+    public synchronized boolean update(Bitmap frame) {
+        boolean sameSize = frame.getWidth() == frameWidth && frame.getHeight() == frameHeight;
+        frameWidth = frame.getWidth();
+        frameHeight = frame.getHeight();
+        shiftX = 0;
+        shiftY = 0;
+
+        Bitmap small = Bitmap.createScaledBitmap(frame, profileWidth, profileHeight, true);
+        small.getPixels(pixels, 0, profileWidth, 0, 0, profileWidth, profileHeight);
+        if (small != frame) small.recycle();
+
+        computeProfiles();
+
+        boolean scrolled = false;
+        if (hasPrevious && sameSize) {
+            int dy = bestShift(prevRows, rows, (int) (profileHeight * maxShiftFraction));
+            int dx = bestShift(prevCols, cols, (int) (profileWidth * maxShiftFraction));
+
+            if (dy != 0 && dx == 0) {
+                shiftY = Math.round((float) dy * frameHeight / profileHeight);
+                scrolled = true;
+            } else if (dx != 0 && dy == 0) {
+                shiftX = Math.round((float) dx * frameWidth / profileWidth);
+                scrolled = true;
+            }
+        }
+
+        float[] tmp = prevRows;
+        prevRows = rows;
+        rows = tmp;
+        tmp = prevCols;
+        prevCols = cols;
+        cols = tmp;
+        hasPrevious = true;
+
+        return scrolled;
+    }
+
+    private void computeProfiles() {
+        for (int x = 0; x < profileWidth; x++) cols[x] = 0f;
+
+        for (int y = 0; y < profileHeight; y++) {
+            int rowSum = 0;
+            int base = y * profileWidth;
+            for (int x = 0; x < profileWidth; x++) {
+                int p = pixels[base + x];
+                int luma = (((p >> 16) & 0xFF) * 77 + ((p >> 8) & 0xFF) * 150 + (p & 0xFF) * 29) >> 8;
+                rowSum += luma;
+                cols[x] += luma;
+            }
+            rows[y] = (float) rowSum / profileWidth;
+        }
+
+        float invHeight = 1f / profileHeight;
+        for (int x = 0; x < profileWidth; x++) cols[x] *= invHeight;
+    }
+
+    /**
+     * الإزاحة s التي تحقق current[i] ≈ previous[i - s]، أو 0 إذا لم تكن المطابقة واضحة
+     */
+    private static int bestShift(float[] previous, float[] current, int maxShift) {
+        if (contrast(current) < MIN_PROFILE_CONTRAST) return 0;
+
+        float zeroCost = matchCost(previous, current, 0);
+        float bestCost = zeroCost;
+        int best = 0;
+
+        for (int s = -maxShift; s <= maxShift; s++) {
+            if (s == 0) continue;
+            float cost = matchCost(previous, current, s);
+            if (cost < bestCost) {
+                bestCost = cost;
+                best = s;
+            }
+        }
+
+        if (best == 0 || bestCost > MAX_MATCH_COST) return 0;
+        if (zeroCost < bestCost * MIN_ZERO_COST_RATIO) return 0;
+
+        return best;
+    }
+
+    private static float matchCost(float[] previous, float[] current, int shift) {
+        int start = Math.max(0, shift);
+        int end = Math.min(current.length, previous.length + shift);
+        if (end - start < current.length / 2) return Float.MAX_VALUE;
+
+        float sum = 0f;
+        for (int i = start; i < end; i++) {
+            sum += Math.abs(current[i] - previous[i - shift]);
+        }
+        return sum / (end - start);
+    }
+
+    private static float contrast(float[] profile) {
+        float min = Float.MAX_VALUE;
+        float max = -Float.MAX_VALUE;
+        for (float v : profile) {
+            if (v < min) min = v;
+            if (v > max) max = v;
+        }
+        return max - min;
+    }
+
+    public synchronized int getShiftX() {
+        return shiftX;
+    }
+
+    public synchronized int getShiftY() {
+        return shiftY;
+    }
+
+    public synchronized void reset() {
+        hasPrevious = false;
+    }
+
+    /**
+     * دمج الصناديق المُزاحة مع الكشف الجديد على الشريط المكشوف؛ الكشف الجديد له الأولوية
+     */
+    public static DetectionResult merge(
+            DetectionResult moved,
+            DetectionResult fresh,
+            Rect strip) {
+
+        List<Detection> merged = new ArrayList<>(
+            moved.detections.size() + fresh.detections.size()
+        );
+
+        for (Detection det : moved.detections) {
+            if (strip.contains((int) det.centerX, (int) det.centerY)) continue;
+
+            boolean replaced = false;
+            for (Detection newer : fresh.detections) {
+                if (iou(det, newer) > MERGE_IOU) {
+                    replaced = true;
+                    break;
+                }
+            }
+            if (!replaced) merged.add(det);
+        }
+
+        merged.addAll(fresh.detections);
+
+        return new DetectionResult(merged, moved.imageWidth, moved.imageHeight);
+    }
+
+    private static float iou(Detection a, Detection b) {
+        float interW = Math.min(a.x2, b.x2) - Math.max(a.x1, b.x1);
+        float interH = Math.min(a.y2, b.y2) - Math.max(a.y1, b.y1);
+        if (interW <= 0 || interH <= 0) return 0f;
+
+        float inter = interW * interH;
+        return inter / (a.area + b.area - inter);
+    }
+}
@@ -0,0 +1,165 @@
+package com.animedetector;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * ✅ فك ترميز مخرجات YOLO متعددة الفئات: [1][4+C][N] أو المنقول [1][N][4+C]
+ */
+public class YoloDecoder {
+    public enum Layout { CHANNEL_MAJOR, ANCHOR_MAJOR }
+
+    private final int numClasses;
+    private final int numAnchors;
+    private final Layout layout;
+    private final float[] classThresholds;
+
+    private final float[] bestScores;
+    private final int[] bestClasses;
+    private final int[] candidates;
+    private final ArrayKernels kernels = Kernels.get();
+
+    public YoloDecoder(int numClasses, int numAnchors, Layout layout, float defaultThreshold) {
+        this.numClasses = numClasses;
+        this.numAnchors = numAnchors;
+        this.layout = layout;
+        this.classThresholds = new float[numClasses];
+        Arrays.fill(classThresholds, defaultThreshold);
+        this.bestScores = new float[numAnchors];
+        this.bestClasses = new int[numAnchors];
+        this.candidates = new int[numAnchors];
+    }
+
+    /**
+     * استنتاج التخطيط من شكل المخرج: البعد الأصغر هو 4+C (عدد المرشحات دائماً أكبر بكثير)
+     */
+    public static YoloDecoder fromShape(long[] shape, float defaultThreshold) {
+        if (shape.length != 3 || shape[1] <= 0 || shape[2] <= 0) {
+            throw new IllegalArgumentException("Unsupported output shape " + Arrays.toString(shape));
+        }
+
+        boolean channelMajor = shape[1] <= shape[2];
+        int channels = (int) (channelMajor ? shape[1] : shape[2]);
+        int anchors = (int) (channelMajor ? shape[2] : shape[1]);
+
+        if (channels < 5) {
+            throw new IllegalArgumentException("Output needs at least 5 channels: " + Arrays.toString(shape));
+        }
+
+        return new YoloDecoder(
+            channels - 4, anchors,
+            channelMajor ? Layout.CHANNEL_MAJOR : Layout.ANCHOR_MAJOR,
+            defaultThreshold
+        );
+    }
+
+    public boolean matches(long[] shape) {
+        if (shape.length != 3) return false;
+        return layout == Layout.CHANNEL_MAJOR
+            ? shape[1] == numClasses + 4 && shape[2] == numAnchors
+            : shape[2] == numClasses + 4 && shape[1] == numAnchors;
+    }
+
+    public void setClassThreshold(int classId, float threshold) {
+        classThresholds[classId] = threshold;
+    }
+
+    public int getNumClasses() {
+        return numClasses;
+    }
+
+    public Layout getLayout() {
+        return layout;
+    }
+
+    /**
+     * @param minThreshold حد أدنى عام (العتبة التكيفية) يُطبَّق فوق عتبة كل فئة
+     */
+    public void decode(float[] output, float minThreshold,
+                       float scaleX, float scaleY, float offsetX, float offsetY,
+                       int maxDetections, List<Detection> out) {
+        decode(output, minThreshold, scaleX, scaleY, offsetX, offsetY, maxDetections, null, out);
+    }
+
+    /**
+     * @param pool مصدر الصناديق في المسار المستقر (بلا تخصيص)؛ null = صناديق جديدة
+     */
+    public void decode(float[] output, float minThreshold,
+                       float scaleX, float scaleY, float offsetX, float offsetY,
+                       int maxDetections, DetectionPool pool, List<Detection> out) {
+        if (layout == Layout.CHANNEL_MAJOR) {
+            argmaxChannelMajor(output);
+        } else {
+            argmaxAnchorMajor(output);
+        }
+
+        final int stride = numClasses + 4;
+
+        // ترشيح أولي بالعتبة العامة (متجه على سطح المكتب)؛ عتبة الفئة تُفحص على الناجين فقط
+        int candidateCount = kernels.selectAbove(bestScores, numAnchors, minThreshold, candidates);
+
+        for (int k = 0; k < candidateCount && out.size() < maxDetections; k++) {
+            int i = candidates[k];
+            float conf = bestScores[i];
+            int cls = bestClasses[i];
+
+            if (conf <= Math.max(classThresholds[cls], minThreshold)) continue;
+
+            float centerX, centerY, width, height;
+            if (layout == Layout.CHANNEL_MAJOR) {
+                centerX = output[i];
+                centerY = output[numAnchors + i];
+                width = output[2 * numAnchors + i];
+                height = output[3 * numAnchors + i];
+            } else {
+                int base = i * stride;
+                centerX = output[base];
+                centerY = output[base + 1];
+                width = output[base + 2];
+                height = output[base + 3];
+            }
+
+            float x1 = (centerX - width * 0.5f) * scaleX;
+            float y1 = (centerY - height * 0.5f) * scaleY;
+            float x2 = (centerX + width * 0.5f) * scaleX;
+            float y2 = (centerY + height * 0.5f) * scaleY;
+
+            if (x2 <= x1 || y2 <= y1 || x1 < 0 || y1 < 0) continue;
+
+            out.add(pool != null
+                ? pool.obtain(x1 + offsetX, y1 + offsetY, x2 + offsetX, y2 + offsetY, conf, cls)
+                : new Detection(x1 + offsetX, y1 + offsetY, x2 + offsetX, y2 + offsetY, conf, cls));
+        }
+    }
+
+    /**
+     * argmax بترتيب القنوات: كل فئة صف متصل في الذاكرة، والحلقة الداخلية على المرشحات
+     */
+    private void argmaxChannelMajor(float[] output) {
+        System.arraycopy(output, 4 * numAnchors, bestScores, 0, numAnchors);
+        Arrays.fill(bestClasses, 0);
+
+        for (int c = 1; c < numClasses; c++) {
+            kernels.argmaxUpdate(output, (4 + c) * numAnchors, numAnchors, bestScores, bestClasses, c);
+        }
+    }
+
+    private void argmaxAnchorMajor(float[] output) {
+        final int stride = numClasses + 4;
+
+        for (int i = 0; i < numAnchors; i++) {
+            int base = i * stride + 4;
+            float best = output[base];
+            int bestClass = 0;
+            for (int c = 1; c < numClasses; c++) {
+                float v = output[base + c];
+                if (v > best) {
+                    best = v;
+                    bestClass = c;
+                }
+            }
+            bestScores[i] = best;
+            bestClasses[i] = bestClass;
+        }
+    }
+}
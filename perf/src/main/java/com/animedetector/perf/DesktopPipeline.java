@@ -0,0 +1,361 @@
+package com.animedetector.perf;
+
+import ai.onnxruntime.NodeInfo;
+import ai.onnxruntime.OnnxJavaType;
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import ai.onnxruntime.TensorInfo;
+
+import com.animedetector.Detection;
+import com.animedetector.DetectionPool;
+import com.animedetector.DetectionPublisher;
+import com.animedetector.DetectionResult;
+import com.animedetector.DetectionSmoother;
+import com.animedetector.NonMaxSuppression;
+import com.animedetector.PreprocessKernel;
+import com.animedetector.YoloDecoder;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.TexturePaint;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * ✅ نسخة سطح المكتب من خط المعالجة: نفس النواة والمفكك وNMS والمنعّم المستخدمة في التطبيق،
+ * مع Java2D مكان Bitmap/Canvas. كل مرحلة تُقاس عبر StageRecorder.
+ * المراحل قبل الـ overlay لا تخصص شيئاً في الحالة المستقرة عدا أغلفة session.run في ORT
+ */
+final class DesktopPipeline implements AutoCloseable {
+    static final String[] STAGES = {"preprocess", "inference", "postprocess", "smooth", "overlay"};
+
+    private static final int INPUT_SIZE = StandInModel.INPUT_SIZE;
+    private static final float CONF_THRESHOLD = 0.25f;
+    private static final float IOU_THRESHOLD = 0.45f;
+    private static final int MAX_DETECTIONS = 100;
+    private static final int SMOOTHING_WINDOW = 5;
+    private static final float CENSOR_MARGIN = 0.05f;
+
+    private final OrtEnvironment env;
+    private final OrtSession session;
+    private final String inputName;
+    private final boolean packedInput;
+    private final long[] inputShape;
+
+    private final BufferedImage resized;
+    private final Graphics2D resizeGraphics;
+    private final int[] resizedPixels;
+    private int[] scaleX0 = new int[0];
+    private int[] scaleX1 = new int[0];
+    private int[] scaleFx = new int[0];
+    private int scaleSourceWidth = -1;
+    private final ByteBuffer inputBuffer;
+    private final FloatBuffer floatView;
+    private final PreprocessKernel kernel;
+
+    // الإدخال يشير إلى inputBuffer مباشرة، والمخرج مثبّت في مخزن مباشر حين يكون شكله ثابتاً
+    private final OnnxTensor inputTensor;
+    private final Map<String, OnnxTensor> inputs;
+    private final Set<String> noOutputs = Collections.emptySet();
+    private final Map<String, OnnxTensor> pinnedOutputs;
+    private final FloatBuffer pinnedData;
+
+    private YoloDecoder decoder;
+    private float[] outputData = new float[0];
+    private long[] outputShape;
+    private final DetectionPool candidatePool = new DetectionPool(MAX_DETECTIONS);
+    private final List<Detection> candidates = new ArrayList<>(MAX_DETECTIONS);
+    private final List<Detection> kept = new ArrayList<>(MAX_DETECTIONS);
+    private final DetectionResult raw = new DetectionResult(kept, 0, 0);
+    private final NonMaxSuppression nms = new NonMaxSuppression(IOU_THRESHOLD, MAX_DETECTIONS);
+    private final DetectionSmoother smoother = new DetectionSmoother(SMOOTHING_WINDOW);
+
+    private DetectionPublisher publisher;
+    private long frameIndex;
+
+    private BufferedImage overlay;
+    private Graphics2D overlayGraphics;
+    private final TexturePaint censorPaint;
+
+    DesktopPipeline(byte[] modelBytes, int threads) throws OrtException {
+        env = OrtEnvironment.getEnvironment();
+        OrtSession.SessionOptions options = new OrtSession.SessionOptions();
+        options.setIntraOpNumThreads(threads);
+        options.setInterOpNumThreads(1);
+        options.setOptimizationLevel(OrtSession.SessionOptions.OptLevel.ALL_OPT);
+        session = env.createSession(modelBytes, options);
+        inputName = session.getInputNames().iterator().next();
+
+        NodeInfo input = session.getInputInfo().get(inputName);
+        packedInput = input.getInfo() instanceof TensorInfo &&
+            ((TensorInfo) input.getInfo()).type == OnnxJavaType.UINT8;
+        inputShape = packedInput
+            ? new long[] {1, INPUT_SIZE, INPUT_SIZE, 3}
+            : new long[] {1, 3, INPUT_SIZE, INPUT_SIZE};
+
+        resized = new BufferedImage(INPUT_SIZE, INPUT_SIZE, BufferedImage.TYPE_INT_RGB);
+        resizeGraphics = resized.createGraphics();
+        resizeGraphics.setRenderingHint(
+            RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR
+        );
+        resizedPixels = ((DataBufferInt) resized.getRaster().getDataBuffer()).getData();
+
+        inputBuffer = ByteBuffer.allocateDirect(3 * INPUT_SIZE * INPUT_SIZE * (packedInput ? 1 : Float.BYTES))
+            .order(ByteOrder.nativeOrder());
+        floatView = packedInput ? null : inputBuffer.asFloatBuffer();
+        kernel = new PreprocessKernel(INPUT_SIZE, INPUT_SIZE, PreprocessKernel.defaultWorkers());
+
+        inputTensor = packedInput
+            ? OnnxTensor.createTensor(env, inputBuffer, inputShape, OnnxJavaType.UINT8)
+            : OnnxTensor.createTensor(env, floatView, inputShape);
+        inputs = Collections.singletonMap(inputName, inputTensor);
+
+        String outputName = session.getOutputNames().iterator().next();
+        long[] shape = fixedShape(session.getOutputInfo().get(outputName));
+        if (shape != null) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(Math.toIntExact(elementCount(shape)) * Float.BYTES)
+                .order(ByteOrder.nativeOrder());
+            pinnedData = buffer.asFloatBuffer();
+            pinnedOutputs = Collections.singletonMap(outputName, OnnxTensor.createTensor(env, pinnedData, shape));
+            outputShape = shape;
+            outputData = new float[pinnedData.capacity()];
+        } else {
+            pinnedData = null;
+            pinnedOutputs = null;
+        }
+
+        censorPaint = createCensorPattern();
+    }
+
+    /**
+     * شكل مخرج float بلا أبعاد ديناميكية، وإلا null (يُقرأ المخرج من نتيجة كل تشغيل)
+     */
+    private static long[] fixedShape(NodeInfo output) {
+        if (!(output.getInfo() instanceof TensorInfo)) return null;
+        TensorInfo info = (TensorInfo) output.getInfo();
+        if (info.type != OnnxJavaType.FLOAT) return null;
+        long[] shape = info.getShape();
+        for (long dim : shape) {
+            if (dim <= 0) return null;
+        }
+        return shape;
+    }
+
+    private static long elementCount(long[] shape) {
+        long count = 1;
+        for (long dim : shape) count *= dim;
+        return count;
+    }
+
+    /**
+     * نشر كل إطار في ملف مُسقَط (نظير SharedMemory على الجهاز)؛ خارج المراحل المقاسة
+     */
+    void setPublisher(DetectionPublisher publisher) {
+        this.publisher = publisher;
+    }
+
+    /**
+     * إطار كامل: تحجيم وتطبيع ← استدلال ← فك ترميز وNMS ← تنعيم ← رسم الـ overlay
+     */
+    DetectionResult process(BufferedImage frame, StageRecorder recorder) throws OrtException {
+        int w = frame.getWidth();
+        int h = frame.getHeight();
+
+        recorder.begin(0);
+        preprocess(frame);
+        recorder.end(0);
+
+        recorder.begin(1);
+        infer();
+        recorder.end(1);
+
+        recorder.begin(2);
+        DetectionResult raw = postprocess(w, h);
+        recorder.end(2);
+
+        recorder.begin(3);
+        DetectionResult smoothed = smooth(raw);
+        recorder.end(3);
+
+        recorder.begin(4);
+        rasterize(smoothed, w, h);
+        recorder.end(4);
+
+        if (publisher != null) publisher.publish(smoothed, frameIndex, System.nanoTime());
+        frameIndex++;
+
+        return smoothed;
+    }
+
+    float getConvertedTileFraction() {
+        return kernel.getConvertedTileFraction();
+    }
+
+    /**
+     * تحجيم الإطار إلى 640×640 ثم تحويله إلى مخزن الإدخال
+     */
+    void preprocess(BufferedImage frame) {
+        if (!scaleDirect(frame)) {
+            resizeGraphics.drawImage(frame, 0, 0, INPUT_SIZE, INPUT_SIZE, null);
+        }
+        if (packedInput) {
+            kernel.packRgbIncremental(resizedPixels, inputBuffer);
+        } else {
+            kernel.convertIncremental(resizedPixels, floatView);
+        }
+    }
+
+    void infer() throws OrtException {
+        if (pinnedOutputs != null) {
+            session.run(inputs, noOutputs, pinnedOutputs).close();
+            pinnedData.position(0);
+            pinnedData.get(outputData, 0, outputData.length);
+            return;
+        }
+
+        try (OrtSession.Result result = session.run(inputs)) {
+            OnnxTensor output = (OnnxTensor) result.get(0);
+            outputShape = output.getInfo().getShape();
+            FloatBuffer buffer = output.getFloatBuffer();
+
+            int size = buffer.remaining();
+            if (outputData.length != size) outputData = new float[size];
+            buffer.get(outputData, 0, size);
+        }
+    }
+
+    /**
+     * فك الترميز وNMS إلى نتيجة يملكها الخط: صالحة حتى استدعاء postprocess التالي
+     */
+    DetectionResult postprocess(int w, int h) {
+        if (decoder == null || !decoder.matches(outputShape)) {
+            decoder = YoloDecoder.fromShape(outputShape, CONF_THRESHOLD);
+        }
+        candidatePool.reset();
+        candidates.clear();
+        decoder.decode(
+            outputData, CONF_THRESHOLD, (float) w / INPUT_SIZE, (float) h / INPUT_SIZE, 0, 0,
+            MAX_DETECTIONS, candidatePool, candidates
+        );
+        nms.apply(candidates, kept);
+        return raw.refresh(w, h);
+    }
+
+    DetectionResult smooth(DetectionResult raw) {
+        return smoother.smooth(raw);
+    }
+
+    /**
+     * تحجيم ثنائي الخطية مباشرة على بكسلات int للإطار (Java2D يخصص في كل drawImage)؛
+     * الأنواع الأخرى والصور الفرعية تعود إلى drawImage
+     */
+    private boolean scaleDirect(BufferedImage frame) {
+        int type = frame.getType();
+        if (type != BufferedImage.TYPE_INT_RGB && type != BufferedImage.TYPE_INT_ARGB) return false;
+        if (!(frame.getRaster().getDataBuffer() instanceof DataBufferInt)) return false;
+
+        int sw = frame.getWidth();
+        int sh = frame.getHeight();
+        int[] src = ((DataBufferInt) frame.getRaster().getDataBuffer()).getData();
+        if (src.length != sw * sh) return false;
+
+        if (scaleSourceWidth != sw) {
+            scaleX0 = new int[INPUT_SIZE];
+            scaleX1 = new int[INPUT_SIZE];
+            scaleFx = new int[INPUT_SIZE];
+            for (int x = 0; x < INPUT_SIZE; x++) {
+                float s = Math.max(0f, (x + 0.5f) * sw / INPUT_SIZE - 0.5f);
+                int i = (int) s;
+                scaleX0[x] = i;
+                scaleX1[x] = Math.min(sw - 1, i + 1);
+                scaleFx[x] = (int) ((s - i) * 256);
+            }
+            scaleSourceWidth = sw;
+        }
+
+        // أوزان بدقة 8 بت: الأحمر والأزرق معاً في قناع 0xFF00FF والأخضر وحده
+        for (int y = 0; y < INPUT_SIZE; y++) {
+            float s = Math.max(0f, (y + 0.5f) * sh / INPUT_SIZE - 0.5f);
+            int j = (int) s;
+            int fy = (int) ((s - j) * 256);
+            int row0 = j * sw;
+            int row1 = Math.min(sh - 1, j + 1) * sw;
+            int out = y * INPUT_SIZE;
+
+            for (int x = 0; x < INPUT_SIZE; x++) {
+                int fx = scaleFx[x];
+                int a = src[row0 + scaleX0[x]];
+                int b = src[row0 + scaleX1[x]];
+                int c = src[row1 + scaleX0[x]];
+                int d = src[row1 + scaleX1[x]];
+
+                int rbTop = (((a & 0xFF00FF) * (256 - fx) + (b & 0xFF00FF) * fx) >>> 8) & 0xFF00FF;
+                int gTop = (((a & 0xFF00) * (256 - fx) + (b & 0xFF00) * fx) >>> 8) & 0xFF00;
+                int rbBottom = (((c & 0xFF00FF) * (256 - fx) + (d & 0xFF00FF) * fx) >>> 8) & 0xFF00FF;
+                int gBottom = (((c & 0xFF00) * (256 - fx) + (d & 0xFF00) * fx) >>> 8) & 0xFF00;
+
+                int rb = ((rbTop * (256 - fy) + rbBottom * fy) >>> 8) & 0xFF00FF;
+                int g = ((gTop * (256 - fy) + gBottom * fy) >>> 8) & 0xFF00;
+                resizedPixels[out + x] = 0xFF000000 | rb | g;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * مكافئ updateOverlay في OverlayService: مسح الطبقة ثم رسم مستطيل النمط لكل صندوق مع هامش 5%
+     */
+    private void rasterize(DetectionResult result, int w, int h) {
+        if (overlay == null || overlay.getWidth() != w || overlay.getHeight() != h) {
+            if (overlayGraphics != null) overlayGraphics.dispose();
+            overlay = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+            overlayGraphics = overlay.createGraphics();
+            overlayGraphics.setPaint(censorPaint);
+        }
+
+        overlayGraphics.setComposite(AlphaComposite.Clear);
+        overlayGraphics.fillRect(0, 0, w, h);
+        overlayGraphics.setComposite(AlphaComposite.SrcOver);
+
+        for (Detection det : result.detections) {
+            float margin = Math.min(det.width, det.height) * CENSOR_MARGIN;
+            int x1 = (int) (det.x1 - margin);
+            int y1 = (int) (det.y1 - margin);
+            overlayGraphics.fillRect(x1, y1, (int) (det.x2 + margin) - x1, (int) (det.y2 + margin) - y1);
+        }
+    }
+
+    private static TexturePaint createCensorPattern() {
+        BufferedImage tile = new BufferedImage(16, 16, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < 16; y++) {
+            for (int x = 0; x < 16; x++) {
+                boolean dark = ((x / 8) + (y / 8)) % 2 == 0;
+                tile.setRGB(x, y, dark ? 0xF0202020 : 0xF0404040);
+            }
+        }
+        return new TexturePaint(tile, new Rectangle(0, 0, 16, 16));
+    }
+
+    @Override
+    public void close() throws OrtException {
+        resizeGraphics.dispose();
+        if (overlayGraphics != null) overlayGraphics.dispose();
+        kernel.shutdown();
+        inputTensor.close();
+        if (pinnedOutputs != null) pinnedOutputs.values().iterator().next().close();
+        session.close();
+    }
+}
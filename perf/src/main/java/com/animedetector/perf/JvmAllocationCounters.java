@@ -0,0 +1,50 @@
+package com.animedetector.perf;
+
+import com.animedetector.AllocationCounters;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+/**
+ * ✅ نظير DebugAllocationCounters على JVM سطح المكتب: عداد الخيط من ThreadMXBean
+ * ومجموع كل المجمّعات من GarbageCollectorMXBean
+ */
+final class JvmAllocationCounters implements AllocationCounters {
+    private final com.sun.management.ThreadMXBean threads;
+    private final List<GarbageCollectorMXBean> collectors;
+
+    JvmAllocationCounters() {
+        com.sun.management.ThreadMXBean bean = null;
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean) {
+            bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            if (bean.isThreadAllocatedMemorySupported()) bean.setThreadAllocatedMemoryEnabled(true);
+            else bean = null;
+        }
+        this.threads = bean;
+        this.collectors = ManagementFactory.getGarbageCollectorMXBeans();
+    }
+
+    boolean isSupported() {
+        return threads != null;
+    }
+
+    @Override
+    public long threadAllocatedBytes() {
+        return threads != null ? threads.getCurrentThreadAllocatedBytes() : -1L;
+    }
+
+    @Override
+    public long gcCount() {
+        long total = 0;
+        for (int i = 0; i < collectors.size(); i++) total += Math.max(0, collectors.get(i).getCollectionCount());
+        return total;
+    }
+
+    @Override
+    public long gcTimeMillis() {
+        long total = 0;
+        for (int i = 0; i < collectors.size(); i++) total += Math.max(0, collectors.get(i).getCollectionTime());
+        return total;
+    }
+}
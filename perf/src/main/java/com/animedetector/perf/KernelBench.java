@@ -0,0 +1,348 @@
+package com.animedetector.perf;
+
+import com.animedetector.ArrayKernels;
+import com.animedetector.Kernels;
+import com.animedetector.ScalarKernels;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * ✅ مقارنة ArrayKernels المتجهة بالعددية: تطابق المخرجات بتاً ببت على بيانات عشوائية (مع تعادلات
+ * وأطوال غير مضاعفة لعرض المتجه)، ثم زمن كل نواة بأحجام خط المعالجة الفعلية.
+ *
+ * الاستخدام: ./gradlew :perf:kernelBench  [--report build/reports/perf/kernels.json]
+ * رمز الخروج 1 إذا اختلفت المخرجات، 2 إذا لم تتوفر النسخة المتجهة.
+ */
+public final class KernelBench {
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int MEASURE_ROUNDS = 5;
+    private static final long WARMUP_NANOS = 1_500_000_000L;
+
+    private KernelBench() {
+    }
+
+    public static void main(String[] argv) throws Exception {
+        ArrayKernels vector = Kernels.get();
+        if (vector == ScalarKernels.INSTANCE) {
+            System.err.println("KernelBench: vector kernels unavailable (run with --add-modules jdk.incubator.vector)");
+            System.exit(2);
+        }
+
+        List<String> mismatches = verify(ScalarKernels.INSTANCE, vector, 42L);
+        if (!mismatches.isEmpty()) {
+            System.err.println("Kernel outputs differ:");
+            for (String m : mismatches) System.err.println("  " + m);
+            System.exit(1);
+        }
+        System.out.println("Outputs identical: scalar vs " + vector.name());
+
+        JvmAllocationCounters allocation = new JvmAllocationCounters();
+        PerfReport report = new PerfReport();
+        report.put("kernels", vector.name());
+        for (Workload w : workloads()) {
+            double scalarNs = measure(w, ScalarKernels.INSTANCE);
+            double vectorNs = measure(w, vector);
+            report.put(w.name + ".scalarMicros", scalarNs / 1e3);
+            report.put(w.name + ".vectorMicros", vectorNs / 1e3);
+            report.put(w.name + ".speedup", scalarNs / vectorNs);
+            long vectorBytes = allocatedPerRun(w, vector, allocation);
+            report.put(w.name + ".vectorAllocBytes", vectorBytes);
+            System.out.printf(Locale.ROOT, "%-12s scalar %9.1fus  vector %9.1fus  x%.2f  vector alloc %dB/run%n",
+                w.name, scalarNs / 1e3, vectorNs / 1e3, scalarNs / vectorNs, vectorBytes);
+        }
+
+        if (argv.length == 2 && argv[0].equals("--report")) {
+            Path path = Paths.get(argv[1]);
+            if (path.getParent() != null) Files.createDirectories(path.getParent());
+            Files.write(path, report.toJson().getBytes(StandardCharsets.UTF_8));
+            System.out.println("Report: " + path);
+        }
+    }
+
+    /**
+     * كل اختلاف سطر في القائمة؛ فارغة = متطابقتان
+     */
+    static List<String> verify(ArrayKernels expected, ArrayKernels actual, long seed) {
+        List<String> mismatches = new ArrayList<>();
+        Random random = new Random(seed);
+
+        for (int round = 0; round < 20; round++) {
+            int length = 1 + random.nextInt(700);
+
+            // convertRow: إزاحات غير محاذاة وتطبيع غير بديهي
+            int[] pixels = new int[length + 7];
+            for (int i = 0; i < pixels.length; i++) pixels[i] = random.nextInt();
+            float[] mean = {0.485f, 0.456f, 0.406f};
+            float[] std = {0.229f, 0.224f, 0.225f};
+            float[][] luts = luts(mean, std);
+            float[][] a = new float[3][length + 5];
+            float[][] b = new float[3][length + 5];
+            expected.convertRow(pixels, 7, length, mean, std, luts[0], luts[1], luts[2], a[0], a[1], a[2], 5);
+            actual.convertRow(pixels, 7, length, mean, std, luts[0], luts[1], luts[2], b[0], b[1], b[2], 5);
+            for (int c = 0; c < 3; c++) {
+                if (!Arrays.equals(a[c], b[c])) mismatches.add("convertRow channel " + c + " length " + length);
+            }
+
+            // argmaxUpdate وselectAbove: قيم مكمّاة لإنتاج تعادلات
+            int classes = 1 + random.nextInt(6);
+            float[] scores = new float[(classes + 1) * length];
+            for (int i = 0; i < scores.length; i++) scores[i] = random.nextInt(16) / 16f;
+            float[] bestA = Arrays.copyOf(scores, length);
+            float[] bestB = Arrays.copyOf(scores, length);
+            int[] classA = new int[length];
+            int[] classB = new int[length];
+            for (int c = 1; c <= classes; c++) {
+                expected.argmaxUpdate(scores, c * length, length, bestA, classA, c);
+                actual.argmaxUpdate(scores, c * length, length, bestB, classB, c);
+            }
+            if (!Arrays.equals(bestA, bestB) || !Arrays.equals(classA, classB)) {
+                mismatches.add("argmaxUpdate length " + length);
+            }
+
+            int[] selA = new int[length];
+            int[] selB = new int[length];
+            float threshold = random.nextInt(16) / 16f;
+            int countA = expected.selectAbove(bestA, length, threshold, selA);
+            int countB = actual.selectAbove(bestA, length, threshold, selB);
+            if (countA != countB || !Arrays.equals(selA, 0, countA, selB, 0, countB)) {
+                mismatches.add("selectAbove length " + length);
+            }
+
+            // suppressOverlaps: عناقيد صناديق متداخلة، مع وبدون الفصل حسب الفئة
+            int n = 1 + random.nextInt(300);
+            Boxes boxes = Boxes.random(random, n, 3);
+            for (boolean perClass : new boolean[] {true, false}) {
+                boolean[] supA = new boolean[n];
+                boolean[] supB = new boolean[n];
+                for (int i = 0; i < n; i++) {
+                    if (!supA[i]) {
+                        expected.suppressOverlaps(boxes.x1, boxes.y1, boxes.x2, boxes.y2, boxes.area,
+                            boxes.classId, supA, i, n, 0.45f, perClass);
+                    }
+                    if (!supB[i]) {
+                        actual.suppressOverlaps(boxes.x1, boxes.y1, boxes.x2, boxes.y2, boxes.area,
+                            boxes.classId, supB, i, n, 0.45f, perClass);
+                    }
+                }
+                if (!Arrays.equals(supA, supB)) mismatches.add("suppressOverlaps n " + n + " perClass " + perClass);
+            }
+
+            // selectWithin: حدود غير محاذاة وحد أقصى صغير
+            int from = random.nextInt(Math.max(1, n / 2));
+            int maxOut = 1 + random.nextInt(8);
+            int[] outA = new int[maxOut];
+            int[] outB = new int[maxOut];
+            float tx = boxes.cx(random.nextInt(n));
+            float ty = boxes.cy(random.nextInt(n));
+            float[] cx = new float[n];
+            float[] cy = new float[n];
+            for (int i = 0; i < n; i++) {
+                cx[i] = boxes.cx(i);
+                cy[i] = boxes.cy(i);
+            }
+            int foundA = expected.selectWithin(cx, cy, boxes.classId, from, n, tx, ty, 1, 2500f, outA, maxOut);
+            int foundB = actual.selectWithin(cx, cy, boxes.classId, from, n, tx, ty, 1, 2500f, outB, maxOut);
+            if (foundA != foundB || !Arrays.equals(outA, 0, foundA, outB, 0, foundB)) {
+                mismatches.add("selectWithin n " + n + " maxOut " + maxOut);
+            }
+        }
+        return mismatches;
+    }
+
+    private static float[][] luts(float[] mean, float[] std) {
+        float[][] luts = new float[3][256];
+        final float inv255 = 1.0f / 255.0f;
+        for (int i = 0; i < 256; i++) {
+            float v = i * inv255;
+            for (int c = 0; c < 3; c++) luts[c][i] = (v - mean[c]) / std[c];
+        }
+        return luts;
+    }
+
+    private static final class Boxes {
+        final float[] x1;
+        final float[] y1;
+        final float[] x2;
+        final float[] y2;
+        final float[] area;
+        final int[] classId;
+
+        Boxes(int n) {
+            x1 = new float[n];
+            y1 = new float[n];
+            x2 = new float[n];
+            y2 = new float[n];
+            area = new float[n];
+            classId = new int[n];
+        }
+
+        static Boxes random(Random random, int n, int classes) {
+            Boxes boxes = new Boxes(n);
+            int clusters = 1 + n / 8;
+            float[] centers = new float[clusters * 2];
+            for (int i = 0; i < centers.length; i++) centers[i] = random.nextFloat() * 600f;
+            for (int i = 0; i < n; i++) {
+                int c = random.nextInt(clusters);
+                float w = 20f + random.nextFloat() * 80f;
+                float h = 20f + random.nextFloat() * 80f;
+                float cx = centers[2 * c] + (random.nextFloat() - 0.5f) * 40f;
+                float cy = centers[2 * c + 1] + (random.nextFloat() - 0.5f) * 40f;
+                boxes.x1[i] = cx - w / 2;
+                boxes.y1[i] = cy - h / 2;
+                boxes.x2[i] = cx + w / 2;
+                boxes.y2[i] = cy + h / 2;
+                boxes.area[i] = (boxes.x2[i] - boxes.x1[i]) * (boxes.y2[i] - boxes.y1[i]);
+                boxes.classId[i] = random.nextInt(classes);
+            }
+            return boxes;
+        }
+
+        float cx(int i) {
+            return (x1[i] + x2[i]) * 0.5f;
+        }
+
+        float cy(int i) {
+            return (y1[i] + y2[i]) * 0.5f;
+        }
+    }
+
+    /**
+     * حمل عمل واحد بأحجام خط المعالجة: إطار 640×640، 8400 مرشح × 80 فئة، 300 صندوق لـ NMS
+     */
+    private abstract static class Workload {
+        final String name;
+
+        Workload(String name) {
+            this.name = name;
+        }
+
+        abstract void run(ArrayKernels kernels);
+    }
+
+    private static List<Workload> workloads() {
+        Random random = new Random(7);
+        List<Workload> list = new ArrayList<>();
+
+        final int size = 640;
+        final int[] frame = new int[size * size];
+        for (int i = 0; i < frame.length; i++) frame[i] = random.nextInt();
+        final float[] mean = {0f, 0f, 0f};
+        final float[] std = {1f, 1f, 1f};
+        final float[][] luts = luts(mean, std);
+        final float[][] rows = new float[3][size];
+        list.add(new Workload("convert") {
+            @Override
+            void run(ArrayKernels k) {
+                for (int y = 0; y < size; y++) {
+                    k.convertRow(frame, y * size, size, mean, std, luts[0], luts[1], luts[2],
+                        rows[0], rows[1], rows[2], 0);
+                }
+            }
+        });
+
+        final int anchors = 8400;
+        final int classes = 80;
+        final float[] output = new float[(4 + classes) * anchors];
+        for (int i = 0; i < output.length; i++) output[i] = random.nextFloat();
+        final float[] best = new float[anchors];
+        final int[] bestClass = new int[anchors];
+        final int[] selected = new int[anchors];
+        list.add(new Workload("argmax") {
+            @Override
+            void run(ArrayKernels k) {
+                System.arraycopy(output, 4 * anchors, best, 0, anchors);
+                Arrays.fill(bestClass, 0);
+                for (int c = 1; c < classes; c++) {
+                    k.argmaxUpdate(output, (4 + c) * anchors, anchors, best, bestClass, c);
+                }
+            }
+        });
+        list.add(new Workload("threshold") {
+            @Override
+            void run(ArrayKernels k) {
+                k.selectAbove(output, anchors, 0.98f, selected);
+            }
+        });
+
+        final int boxCount = 300;
+        final Boxes boxes = Boxes.random(random, boxCount, 1);
+        final boolean[] suppressed = new boolean[boxCount];
+        list.add(new Workload("nms") {
+            @Override
+            void run(ArrayKernels k) {
+                Arrays.fill(suppressed, false);
+                for (int i = 0; i < boxCount; i++) {
+                    if (!suppressed[i]) {
+                        k.suppressOverlaps(boxes.x1, boxes.y1, boxes.x2, boxes.y2, boxes.area,
+                            boxes.classId, suppressed, i, boxCount, 0.45f, true);
+                    }
+                }
+            }
+        });
+
+        final float[] cx = new float[boxCount];
+        final float[] cy = new float[boxCount];
+        for (int i = 0; i < boxCount; i++) {
+            cx[i] = boxes.cx(i);
+            cy[i] = boxes.cy(i);
+        }
+        final int[] matches = new int[boxCount];
+        list.add(new Workload("smoothGrid") {
+            @Override
+            void run(ArrayKernels k) {
+                for (int i = 0; i < boxCount; i++) {
+                    k.selectWithin(cx, cy, boxes.classId, 0, boxCount, cx[i], cy[i], 0, 2500f, matches, boxCount);
+                }
+            }
+        });
+        return list;
+    }
+
+    /**
+     * تخصيص الخيط لتشغيلة واحدة بعد الإحماء: المتجهات التي لم يحذفها C2 (تحليل الهروب) تظهر هنا
+     * كتخصيص لكل إطار في خط المعالجة
+     */
+    private static long allocatedPerRun(Workload workload, ArrayKernels kernels, JvmAllocationCounters allocation) {
+        if (!allocation.isSupported()) return -1L;
+        final int runs = 16;
+        long before = allocation.threadAllocatedBytes();
+        for (int i = 0; i < runs; i++) workload.run(kernels);
+        return (allocation.threadAllocatedBytes() - before) / runs;
+    }
+
+    /**
+     * وسيط زمن الجولة بالنانوثانية؛ كل جولة تكرر الحمل حتى ~20ms على الأقل.
+     * الإحماء بالزمن لا بعدد الجولات: مسار Vector API في المفسّر أبطأ بعشرات المرات من العددي
+     * فلا يصل C2 إليه بجولات قليلة
+     */
+    private static double measure(Workload workload, ArrayKernels kernels) {
+        long warmupEnd = System.nanoTime() + WARMUP_NANOS;
+        while (System.nanoTime() < warmupEnd) workload.run(kernels);
+
+        int iterations = 1;
+        while (true) {
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) workload.run(kernels);
+            if (System.nanoTime() - start > 20_000_000L) break;
+            iterations *= 2;
+        }
+
+        double[] samples = new double[MEASURE_ROUNDS];
+        for (int round = -WARMUP_ROUNDS; round < MEASURE_ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) workload.run(kernels);
+            long elapsed = System.nanoTime() - start;
+            if (round >= 0) samples[round] = (double) elapsed / iterations;
+        }
+        Arrays.sort(samples);
+        return samples[samples.length / 2];
+    }
+}
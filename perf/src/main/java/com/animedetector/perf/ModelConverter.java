@@ -0,0 +1,168 @@
+package com.animedetector.perf;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * ✅ أداة تحويل النموذج إلى إدخال uint8 NHWC: تضيف في بداية الرسم
+ * Cast(uint8→float) ← Mul(1/(255·std)) [← Add(-mean/std)] ← Transpose(NHWC→NCHW)
+ * وتُخرج الناتج باسم الإدخال الأصلي، فلا يتغيّر أي عقدة من النموذج الأصلي.
+ *
+ * الاستخدام: ./gradlew :perf:convertModel -Pin=model.onnx -Pout=model_u8.onnx [-Pmean=r,g,b -Pstd=r,g,b]
+ */
+public final class ModelConverter {
+    private static final int MODEL_IR_VERSION = 1;
+    private static final int MODEL_GRAPH = 7;
+    private static final int GRAPH_NODE = 1;
+    private static final int GRAPH_INITIALIZER = 5;
+    private static final int GRAPH_INPUT = 11;
+    private static final int VALUE_INFO_NAME = 1;
+    private static final int VALUE_INFO_TYPE = 2;
+    private static final int TENSOR_NAME = 8;
+    private static final int TYPE_TENSOR = 1;
+    private static final int TENSOR_TYPE_SHAPE = 2;
+    private static final int SHAPE_DIM = 1;
+    private static final int DIM_VALUE = 1;
+
+    private static final String PREFIX = "packed_input_";
+
+    private ModelConverter() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: ModelConverter <in.onnx> <out.onnx> [mean r,g,b] [std r,g,b]");
+            System.exit(2);
+        }
+        float[] mean = args.length > 2 ? parseTriple(args[2]) : new float[] {0f, 0f, 0f};
+        float[] std = args.length > 3 ? parseTriple(args[3]) : new float[] {1f, 1f, 1f};
+
+        Path in = Paths.get(args[0]);
+        Path out = Paths.get(args[1]);
+        byte[] converted = convert(Files.readAllBytes(in), mean, std);
+        Files.write(out, converted);
+        System.out.println("Wrote " + out + " (" + converted.length + " bytes, uint8 NHWC input)");
+    }
+
+    /**
+     * @throws IOException إذا لم يكن في النموذج إدخال صورة [1, 3, H, W] بأبعاد ثابتة
+     */
+    static byte[] convert(byte[] model, float[] mean, float[] std) throws IOException {
+        List<ProtoReader.Field> modelFields = ProtoReader.parse(model);
+        ProtoReader.Field graphField = ProtoReader.first(modelFields, MODEL_GRAPH);
+        if (graphField == null) throw new IOException("Model has no graph");
+
+        ProtoReader.Field irField = ProtoReader.first(modelFields, MODEL_IR_VERSION);
+        boolean initializersAreInputs = irField == null || irField.varint < 4;
+
+        List<ProtoReader.Field> graphFields = ProtoReader.parse(graphField.bytes);
+
+        Set<String> initializers = new HashSet<>();
+        for (ProtoReader.Field field : graphFields) {
+            if (field.number != GRAPH_INITIALIZER) continue;
+            ProtoReader.Field name = ProtoReader.first(ProtoReader.parse(field.bytes), TENSOR_NAME);
+            if (name != null) initializers.add(name.string());
+        }
+
+        ProtoReader.Field imageInput = null;
+        String imageName = null;
+        for (ProtoReader.Field field : graphFields) {
+            if (field.number != GRAPH_INPUT) continue;
+            String name = ProtoReader.first(ProtoReader.parse(field.bytes), VALUE_INFO_NAME).string();
+            if (!initializers.contains(name)) {
+                imageInput = field;
+                imageName = name;
+                break;
+            }
+        }
+        if (imageInput == null) throw new IOException("Model has no image input");
+
+        long[] dims = inputDims(imageInput.bytes);
+        if (dims.length != 4 || dims[1] != 3 || dims[2] <= 0 || dims[3] <= 0) {
+            throw new IOException("Expected a static [N, 3, H, W] input, got " + Arrays.toString(dims));
+        }
+
+        float[] scale = new float[3];
+        float[] bias = new float[3];
+        boolean hasBias = false;
+        for (int c = 0; c < 3; c++) {
+            scale[c] = 1f / (255f * std[c]);
+            bias[c] = -mean[c] / std[c];
+            hasBias |= bias[c] != 0f;
+        }
+
+        String packed = PREFIX + "u8";
+        String asFloat = PREFIX + "f32";
+        String scaled = PREFIX + "scaled";
+        String normalized = hasBias ? PREFIX + "normalized" : scaled;
+
+        ProtoWriter graph = new ProtoWriter()
+            .message(GRAPH_NODE, OnnxProtos.node("Cast", new String[] {packed}, asFloat,
+                OnnxProtos.intAttr("to", OnnxProtos.TYPE_FLOAT)))
+            .message(GRAPH_NODE, OnnxProtos.node("Mul", new String[] {asFloat, PREFIX + "scale"}, scaled));
+        if (hasBias) {
+            graph.message(GRAPH_NODE, OnnxProtos.node("Add", new String[] {scaled, PREFIX + "bias"}, normalized));
+        }
+        graph.message(GRAPH_NODE, OnnxProtos.node("Transpose", new String[] {normalized}, imageName,
+            OnnxProtos.ints("perm", 0, 3, 1, 2)));
+
+        for (ProtoReader.Field field : graphFields) {
+            if (field == imageInput) {
+                graph.message(GRAPH_INPUT, OnnxProtos.valueInfo(
+                    packed, OnnxProtos.TYPE_UINT8, dims[0], dims[2], dims[3], 3
+                ));
+            } else {
+                graph.raw(field.raw);
+            }
+        }
+
+        graph.message(GRAPH_INITIALIZER, OnnxProtos.floatTensor(PREFIX + "scale", scale, 1, 1, 1, 3));
+        if (hasBias) graph.message(GRAPH_INITIALIZER, OnnxProtos.floatTensor(PREFIX + "bias", bias, 1, 1, 1, 3));
+        // IR < 4 يشترط إدراج كل initializer في مدخلات الرسم
+        if (initializersAreInputs) {
+            graph.message(GRAPH_INPUT, OnnxProtos.valueInfo(PREFIX + "scale", OnnxProtos.TYPE_FLOAT, 1, 1, 1, 3));
+            if (hasBias) graph.message(GRAPH_INPUT, OnnxProtos.valueInfo(PREFIX + "bias", OnnxProtos.TYPE_FLOAT, 1, 1, 1, 3));
+        }
+
+        ProtoWriter out = new ProtoWriter();
+        for (ProtoReader.Field field : modelFields) {
+            if (field == graphField) out.message(MODEL_GRAPH, graph);
+            else out.raw(field.raw);
+        }
+        return out.toByteArray();
+    }
+
+    private static long[] inputDims(byte[] valueInfo) throws IOException {
+        ProtoReader.Field type = ProtoReader.first(ProtoReader.parse(valueInfo), VALUE_INFO_TYPE);
+        if (type == null) return new long[0];
+        ProtoReader.Field tensor = ProtoReader.first(ProtoReader.parse(type.bytes), TYPE_TENSOR);
+        if (tensor == null) return new long[0];
+        ProtoReader.Field shape = ProtoReader.first(ProtoReader.parse(tensor.bytes), TENSOR_TYPE_SHAPE);
+        if (shape == null) return new long[0];
+
+        List<ProtoReader.Field> dimFields = ProtoReader.parse(shape.bytes);
+        long[] dims = new long[dimFields.size()];
+        int count = 0;
+        for (ProtoReader.Field dim : dimFields) {
+            if (dim.number != SHAPE_DIM) continue;
+            ProtoReader.Field value = ProtoReader.first(ProtoReader.parse(dim.bytes), DIM_VALUE);
+            // بُعد رمزي (dim_param) = غير معروف
+            dims[count++] = value != null && value.wireType == 0 ? value.varint : -1;
+        }
+        return Arrays.copyOf(dims, count);
+    }
+
+    private static float[] parseTriple(String value) {
+        String[] parts = value.split(",");
+        if (parts.length != 3) throw new IllegalArgumentException("Expected r,g,b: " + value);
+        return new float[] {
+            Float.parseFloat(parts[0].trim()), Float.parseFloat(parts[1].trim()), Float.parseFloat(parts[2].trim())
+        };
+    }
+}
@@ -0,0 +1,62 @@
+package com.animedetector.perf;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * ✅ بناء رسائل ONNX (NodeProto و TensorProto و ValueInfoProto) بأرقام حقول onnx.proto
+ */
+final class OnnxProtos {
+    static final int TYPE_FLOAT = 1;
+    static final int TYPE_UINT8 = 2;
+    static final int TYPE_INT64 = 7;
+
+    private static final int ATTR_INT = 2;
+    private static final int ATTR_INTS = 7;
+
+    private OnnxProtos() {
+    }
+
+    static ProtoWriter node(String op, String[] inputs, String output, ProtoWriter... attrs) {
+        ProtoWriter node = new ProtoWriter();
+        for (String input : inputs) node.string(1, input);
+        node.string(2, output).string(3, output).string(4, op);
+        for (ProtoWriter attr : attrs) node.message(5, attr);
+        return node;
+    }
+
+    static ProtoWriter intAttr(String name, long value) {
+        return new ProtoWriter().string(1, name).varint(3, value).varint(20, ATTR_INT);
+    }
+
+    static ProtoWriter ints(String name, long... values) {
+        ProtoWriter attr = new ProtoWriter().string(1, name);
+        for (long v : values) attr.varint(8, v);
+        return attr.varint(20, ATTR_INTS);
+    }
+
+    static ProtoWriter floatTensor(String name, float[] data, long... dims) {
+        ByteBuffer raw = ByteBuffer.allocate(data.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (float v : data) raw.putFloat(v);
+        return tensor(name, TYPE_FLOAT, raw.array(), dims);
+    }
+
+    static ProtoWriter int64Tensor(String name, long... values) {
+        ByteBuffer raw = ByteBuffer.allocate(values.length * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (long v : values) raw.putLong(v);
+        return tensor(name, TYPE_INT64, raw.array(), values.length);
+    }
+
+    private static ProtoWriter tensor(String name, int type, byte[] raw, long... dims) {
+        ProtoWriter tensor = new ProtoWriter();
+        for (long d : dims) tensor.varint(1, d);
+        return tensor.varint(2, type).string(8, name).bytes(9, raw);
+    }
+
+    static ProtoWriter valueInfo(String name, int elemType, long... dims) {
+        ProtoWriter shape = new ProtoWriter();
+        for (long d : dims) shape.message(1, new ProtoWriter().varint(1, d));
+        ProtoWriter tensorType = new ProtoWriter().varint(1, elemType).message(2, shape);
+        return new ProtoWriter().string(1, name).message(2, new ProtoWriter().message(1, tensorType));
+    }
+}
@@ -0,0 +1,185 @@
+package com.animedetector.perf;
+
+import ai.onnxruntime.OrtException;
+
+import com.animedetector.DetectionExportFormat;
+import com.animedetector.DetectionPublisher;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * ✅ بوابة تراجع الأداء: تشغيل خط المعالجة على المجموعة عدة تمريرات، كتابة الوسيط لكل مقياس،
+ * والمقارنة مع الأساس.
+ *
+ * الاستخدام (عبر Gradle: ./gradlew :perf:perfGate أو :perf:perfBaseline):
+ *   --corpus scenes.csv --baseline baseline.json --tolerances perf-gate.properties
+ *   --report build/reports/perf/report.json [--model real.onnx] [--export detections.bin]
+ *   [--uint8-input] [--update-baseline]
+ *
+ * رمز الخروج 1 عند تجاوز أي سماحية، 2 عند خطأ في الإعداد.
+ */
+public final class PerfGate {
+    private static final int EXPORT_CAPACITY = 64;
+
+    private PerfGate() {
+    }
+
+    public static void main(String[] argv) throws IOException, OrtException {
+        System.setProperty("java.awt.headless", "true");
+        Map<String, String> args = parseArgs(argv);
+
+        Path corpusPath = Paths.get(require(args, "corpus"));
+        Path baselinePath = Paths.get(require(args, "baseline"));
+        Path reportPath = Paths.get(require(args, "report"));
+        Properties tolerances = loadProperties(Paths.get(require(args, "tolerances")));
+
+        int warmupFrames = Integer.parseInt(tolerances.getProperty("warmup.frames", "10").trim());
+        int threads = Integer.parseInt(tolerances.getProperty("ort.threads", "2").trim());
+        int passCount = Math.max(1, Integer.parseInt(tolerances.getProperty("gate.passes", "5").trim()));
+
+        String modelName = args.containsKey("model") ? args.get("model") : "stand-in";
+        byte[] modelBytes = args.containsKey("model")
+            ? Files.readAllBytes(Paths.get(args.get("model")))
+            : StandInModel.build();
+        if (args.containsKey("uint8-input")) {
+            modelBytes = ModelConverter.convert(modelBytes, new float[] {0f, 0f, 0f}, new float[] {1f, 1f, 1f});
+            modelName += " (uint8 NHWC)";
+        }
+
+        SyntheticCorpus corpus = SyntheticCorpus.load(corpusPath);
+        String corpusName = corpusPath.getFileName().toString();
+
+        List<PerfReport> passes = new ArrayList<>();
+        try (DesktopPipeline pipeline = new DesktopPipeline(modelBytes, threads)) {
+            if (args.containsKey("export")) {
+                pipeline.setPublisher(new DetectionPublisher(
+                    DetectionExportFormat.mapFile(new File(args.get("export")), EXPORT_CAPACITY, true),
+                    EXPORT_CAPACITY
+                ));
+            }
+            for (int pass = 0; pass < passCount; pass++) {
+                StageRecorder recorder = new StageRecorder(DesktopPipeline.STAGES.length, corpus.totalFrames());
+                run(pipeline, corpus, recorder, warmupFrames);
+                passes.add(PerfReport.from(recorder, corpusName, modelName));
+            }
+        }
+
+        PerfReport report = PerfReport.median(passes);
+
+        String json = report.toJson();
+
+        if (reportPath.getParent() != null) Files.createDirectories(reportPath.getParent());
+        Files.write(reportPath, json.getBytes(StandardCharsets.UTF_8));
+        System.out.print(json);
+        System.out.println("Report: " + reportPath);
+
+        if (args.containsKey("update-baseline")) {
+            Files.write(baselinePath, json.getBytes(StandardCharsets.UTF_8));
+            System.out.println("Baseline updated: " + baselinePath);
+            return;
+        }
+
+        if (!Files.exists(baselinePath)) {
+            System.out.println("No baseline at " + baselinePath + "; run :perf:perfBaseline to create one");
+            return;
+        }
+
+        PerfReport baseline = PerfReport.parse(
+            new String(Files.readAllBytes(baselinePath), StandardCharsets.UTF_8)
+        );
+
+        // أساس مسجَّل بنوى أخرى (عددية مقابل متجهة) لا يقيس تراجعاً بل فرق التنفيذ
+        String kernels = report.text("kernels");
+        String baselineKernels = baseline.text("kernels");
+        if (!kernels.equals(baselineKernels)) {
+            System.err.println("Baseline " + baselinePath + " was recorded with kernels '" + baselineKernels
+                + "' but this run uses '" + kernels + "'; regenerate it with :perf:perfBaseline"
+                + " using the same kernel selection (-PscalarKernels for scalar)");
+            System.exit(1);
+        }
+        List<String> regressions = report.compare(baseline, tolerances);
+
+        if (regressions.isEmpty()) {
+            System.out.println("Performance gate passed");
+            return;
+        }
+
+        System.err.println("Performance regressions against " + baselinePath + ":");
+        for (String regression : regressions) System.err.println("  " + regression);
+        System.exit(1);
+    }
+
+    /**
+     * إطارات الإحماء تمر عبر نفس المسار (تسخين JIT وتخصيصات ORT الكسولة) ولا تدخل في التقرير
+     */
+    private static void run(DesktopPipeline pipeline, SyntheticCorpus corpus,
+                            StageRecorder recorder, int warmupFrames) throws OrtException {
+        SyntheticCorpus.Scene first = corpus.getScenes().get(0);
+        SyntheticCorpus.Renderer warmup = new SyntheticCorpus.Renderer(first);
+        recorder.setRecording(false);
+        for (int i = 0; i < warmupFrames; i++) {
+            pipeline.process(warmup.render(i % first.frames), recorder);
+        }
+        warmup.dispose();
+
+        recorder.setRecording(true);
+        for (SyntheticCorpus.Scene scene : corpus.getScenes()) {
+            SyntheticCorpus.Renderer renderer = new SyntheticCorpus.Renderer(scene);
+            for (int i = 0; i < scene.frames; i++) {
+                BufferedImage frame = renderer.render(i);
+                recorder.beginFrame();
+                pipeline.process(frame, recorder);
+                recorder.endFrame();
+            }
+            renderer.dispose();
+        }
+    }
+
+    private static Map<String, String> parseArgs(String[] argv) {
+        Map<String, String> args = new HashMap<>();
+        for (int i = 0; i < argv.length; i++) {
+            if (!argv[i].startsWith("--")) usage("unexpected argument " + argv[i]);
+            String key = argv[i].substring(2);
+            if (key.equals("update-baseline") || key.equals("uint8-input")) {
+                args.put(key, "true");
+            } else {
+                if (i + 1 >= argv.length) usage("missing value for --" + key);
+                args.put(key, argv[++i]);
+            }
+        }
+        return args;
+    }
+
+    private static String require(Map<String, String> args, String key) {
+        String value = args.get(key);
+        if (value == null) usage("missing --" + key);
+        return value;
+    }
+
+    private static Properties loadProperties(Path path) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        return properties;
+    }
+
+    private static void usage(String message) {
+        System.err.println("PerfGate: " + message);
+        System.err.println("usage: --corpus <csv> --baseline <json> --tolerances <properties> "
+            + "--report <json> [--model <onnx>] [--export <file>] [--uint8-input] [--update-baseline]");
+        System.exit(2);
+    }
+}
@@ -0,0 +1,306 @@
+package com.animedetector.perf;
+
+import com.animedetector.Kernels;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * ✅ تقرير الأداء بصيغة JSON: الإنتاجية، p50/p99 لكل مرحلة وللإطار، والتخصيصات وGC لكل إطار.
+ * القراءة تُسطّح الكائنات المتداخلة إلى مفاتيح منقّطة (stages.inference.p99Ms) للمقارنة مع الأساس.
+ */
+final class PerfReport {
+    private static final String BUDGET_PREFIX = "alloc.budget.";
+
+    private final Map<String, Object> values = new LinkedHashMap<>();
+
+    void put(String key, Object value) {
+        values.put(key, value);
+    }
+
+    String text(String key) {
+        Object value = values.get(key);
+        return value != null ? String.valueOf(value) : null;
+    }
+
+    Double number(String key) {
+        Object value = values.get(key);
+        return value instanceof Number ? ((Number) value).doubleValue() : null;
+    }
+
+    static PerfReport from(StageRecorder recorder, String corpus, String model) {
+        PerfReport report = new PerfReport();
+        report.put("corpus", corpus);
+        report.put("model", model);
+        report.put("kernels", Kernels.get().name());
+        report.put("frames", recorder.getFrames());
+        report.put("allocationTracking", recorder.isAllocationSupported());
+
+        double seconds = recorder.totalSeconds();
+        report.put("throughputFps", seconds > 0 ? recorder.getFrames() / seconds : 0);
+        report.put("frame.p50Ms", recorder.frameMillis(50));
+        report.put("frame.p99Ms", recorder.frameMillis(99));
+
+        double totalAlloc = 0;
+        for (int s = 0; s < DesktopPipeline.STAGES.length; s++) {
+            String prefix = "stages." + DesktopPipeline.STAGES[s] + ".";
+            double alloc = recorder.allocatedPerFrame(s);
+            totalAlloc += alloc;
+            report.put(prefix + "p50Ms", recorder.percentileMillis(s, 50));
+            report.put(prefix + "p99Ms", recorder.percentileMillis(s, 99));
+            report.put(prefix + "allocBytesPerFrame", alloc);
+            report.put(prefix + "allocFreeFrames", (double) recorder.allocationFreeFrames(s));
+        }
+        report.put("allocBytesPerFrame", totalAlloc);
+        report.put("gc.collections", (double) recorder.gcCollections());
+        report.put("gc.framesWithCollection", (double) recorder.gcFrames());
+        report.put("gc.timeMillis", (double) recorder.gcMillis());
+        return report;
+    }
+
+    /**
+     * الوسيط لكل مقياس عبر التمريرات؛ توقف GC أو جدولة سيئة في تمريرة واحدة لا يُسقط البوابة
+     */
+    static PerfReport median(List<PerfReport> passes) {
+        PerfReport first = passes.get(0);
+        PerfReport report = new PerfReport();
+        double[] samples = new double[passes.size()];
+
+        for (Map.Entry<String, Object> entry : first.values.entrySet()) {
+            String key = entry.getKey();
+            if (!(entry.getValue() instanceof Double)) {
+                report.put(key, entry.getValue());
+                continue;
+            }
+            for (int i = 0; i < passes.size(); i++) samples[i] = passes.get(i).number(key);
+            Arrays.sort(samples);
+            report.put(key, samples[samples.length / 2]);
+        }
+        report.put("passes", passes.size());
+        return report;
+    }
+
+    /**
+     * كل تراجع يتجاوز السماحية سطر في القائمة؛ قائمة فارغة = نجاح
+     */
+    List<String> compare(PerfReport baseline, Properties tolerances) {
+        double throughputTol = tolerance(tolerances, "throughput.tolerance", 0.15);
+        double latencyTol = tolerance(tolerances, "latency.tolerance", 0.25);
+        double latencySlack = tolerance(tolerances, "latency.slackMs", 2.0);
+        double tailTol = tolerance(tolerances, "tail.tolerance", 1.0);
+        double tailSlack = tolerance(tolerances, "tail.slackMs", 8.0);
+        double allocTol = tolerance(tolerances, "alloc.tolerance", 0.10);
+        double allocSlack = tolerance(tolerances, "alloc.slackBytes", 4096);
+
+        List<String> regressions = new ArrayList<>();
+
+        Double baseFps = baseline.number("throughputFps");
+        Double fps = number("throughputFps");
+        if (baseFps != null && fps != null && fps < baseFps * (1 - throughputTol)) {
+            regressions.add(String.format(Locale.ROOT,
+                "throughputFps %.2f < baseline %.2f - %.0f%%", fps, baseFps, throughputTol * 100));
+        }
+
+        for (Map.Entry<String, Object> entry : baseline.values.entrySet()) {
+            String key = entry.getKey();
+            if (!(entry.getValue() instanceof Number)) continue;
+            double base = ((Number) entry.getValue()).doubleValue();
+            Double current = number(key);
+
+            if (current == null) {
+                if (key.startsWith("stages.")) regressions.add(key + " missing from report");
+                continue;
+            }
+
+            if (key.endsWith("Ms")) {
+                // p99 من 200 إطار = إطاران؛ ضجيج الجدولة وحده يحرّكه، فالحد الضيق على p50 (وسيط التمريرات)
+                // وp99 بحد واسع يلتقط فقط الانهيار الواضح في الذيل
+                boolean tail = key.endsWith("p99Ms");
+                double limit = tail
+                    ? Math.max(base * (1 + tailTol), base + tailSlack)
+                    : Math.max(base * (1 + latencyTol), base + latencySlack);
+                if (current > limit) {
+                    regressions.add(String.format(Locale.ROOT,
+                        "%s %.3fms > limit %.3fms (baseline %.3fms)", key, current, limit, base));
+                }
+            } else if (key.endsWith("allocBytesPerFrame")) {
+                double limit = Math.max(base * (1 + allocTol), base + allocSlack);
+                if (current > limit) {
+                    regressions.add(String.format(Locale.ROOT,
+                        "%s %.0fB > limit %.0fB (baseline %.0fB)", key, current, limit, base));
+                }
+            }
+        }
+        checkBudgets(tolerances, regressions);
+        return regressions;
+    }
+
+    /**
+     * ميزانيات مطلقة لكل مرحلة (alloc.budget.smooth=0): لا تعتمد على الأساس، فالمرحلة التي
+     * أصبحت خالية من التخصيص تبقى كذلك حتى لو أُعيد توليد baseline.json
+     */
+    private void checkBudgets(Properties tolerances, List<String> regressions) {
+        for (String name : tolerances.stringPropertyNames()) {
+            if (!name.startsWith(BUDGET_PREFIX)) continue;
+            String stage = name.substring(BUDGET_PREFIX.length());
+            double budget = Double.parseDouble(tolerances.getProperty(name).trim());
+
+            Double current = number("stages." + stage + ".allocBytesPerFrame");
+            if (current == null) {
+                regressions.add(name + ": stage " + stage + " missing from report");
+            } else if (current > budget) {
+                Double free = number("stages." + stage + ".allocFreeFrames");
+                regressions.add(String.format(Locale.ROOT,
+                    "stages.%s.allocBytesPerFrame %.0fB > budget %.0fB (%.0f/%s frames allocation-free)",
+                    stage, current, budget, free != null ? free : 0, values.get("frames")));
+            }
+        }
+    }
+
+    private static double tolerance(Properties tolerances, String key, double fallback) {
+        String value = tolerances.getProperty(key);
+        return value == null ? fallback : Double.parseDouble(value.trim());
+    }
+
+    String toJson() {
+        Map<String, Object> tree = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            insert(tree, entry.getKey().split("\\."), entry.getValue());
+        }
+        StringBuilder out = new StringBuilder();
+        write(out, tree, "");
+        return out.append('\n').toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void insert(Map<String, Object> tree, String[] path, Object value) {
+        Map<String, Object> node = tree;
+        for (int i = 0; i < path.length - 1; i++) {
+            node = (Map<String, Object>) node.computeIfAbsent(path[i], k -> new LinkedHashMap<String, Object>());
+        }
+        node.put(path[path.length - 1], value);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void write(StringBuilder out, Object value, String indent) {
+        if (value instanceof Map) {
+            Map<String, Object> map = (Map<String, Object>) value;
+            out.append("{\n");
+            int i = 0;
+            for (Map.Entry<String, Object> entry : map.entrySet()) {
+                out.append(indent).append("  \"").append(escape(entry.getKey())).append("\": ");
+                write(out, entry.getValue(), indent + "  ");
+                out.append(++i < map.size() ? ",\n" : "\n");
+            }
+            out.append(indent).append('}');
+        } else if (value instanceof Double || value instanceof Float) {
+            out.append(String.format(Locale.ROOT, "%.4f", ((Number) value).doubleValue()));
+        } else if (value instanceof Number || value instanceof Boolean) {
+            out.append(value);
+        } else {
+            out.append('"').append(escape(String.valueOf(value))).append('"');
+        }
+    }
+
+    private static String escape(String s) {
+        return s.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    static PerfReport parse(String json) {
+        PerfReport report = new PerfReport();
+        new Parser(json, report.values).parseRoot();
+        return report;
+    }
+
+    /**
+     * قارئ JSON صغير يكفي لما يكتبه toJson: كائنات وأرقام ونصوص وقيم منطقية
+     */
+    private static final class Parser {
+        private final String s;
+        private final Map<String, Object> flat;
+        private int pos;
+
+        Parser(String s, Map<String, Object> flat) {
+            this.s = s;
+            this.flat = flat;
+        }
+
+        void parseRoot() {
+            skipWhitespace();
+            parseObject("");
+        }
+
+        private void parseObject(String prefix) {
+            expect('{');
+            skipWhitespace();
+            if (peek() == '}') {
+                pos++;
+                return;
+            }
+            while (true) {
+                skipWhitespace();
+                String key = prefix + parseString();
+                skipWhitespace();
+                expect(':');
+                skipWhitespace();
+                parseValue(key);
+                skipWhitespace();
+                char c = s.charAt(pos++);
+                if (c == '}') return;
+                if (c != ',') throw error("expected ',' or '}'");
+            }
+        }
+
+        private void parseValue(String key) {
+            char c = peek();
+            if (c == '{') {
+                parseObject(key + ".");
+            } else if (c == '"') {
+                flat.put(key, parseString());
+            } else if (s.startsWith("true", pos) || s.startsWith("false", pos)) {
+                boolean value = s.startsWith("true", pos);
+                pos += value ? 4 : 5;
+                flat.put(key, value);
+            } else {
+                int start = pos;
+                while (pos < s.length() && "+-0123456789.eE".indexOf(s.charAt(pos)) >= 0) pos++;
+                if (start == pos) throw error("unexpected value");
+                flat.put(key, Double.parseDouble(s.substring(start, pos)));
+            }
+        }
+
+        private String parseString() {
+            expect('"');
+            StringBuilder out = new StringBuilder();
+            while (true) {
+                char c = s.charAt(pos++);
+                if (c == '"') return out.toString();
+                if (c == '\\') c = s.charAt(pos++);
+                out.append(c);
+            }
+        }
+
+        private char peek() {
+            if (pos >= s.length()) throw error("unexpected end");
+            return s.charAt(pos);
+        }
+
+        private void expect(char c) {
+            if (peek() != c) throw error("expected '" + c + "'");
+            pos++;
+        }
+
+        private void skipWhitespace() {
+            while (pos < s.length() && Character.isWhitespace(s.charAt(pos))) pos++;
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at offset " + pos);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.animedetector.perf;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * ✅ قارئ protobuf أدنى: يفكك رسالة إلى حقولها مع الاحتفاظ بالترميز الخام لإعادة كتابتها كما هي
+ */
+final class ProtoReader {
+    static final class Field {
+        final int number;
+        final int wireType;
+        final long varint;
+        final byte[] bytes;
+        final byte[] raw;
+
+        Field(int number, int wireType, long varint, byte[] bytes, byte[] raw) {
+            this.number = number;
+            this.wireType = wireType;
+            this.varint = varint;
+            this.bytes = bytes;
+            this.raw = raw;
+        }
+
+        String string() {
+            return new String(bytes, java.nio.charset.StandardCharsets.UTF_8);
+        }
+    }
+
+    private ProtoReader() {
+    }
+
+    static List<Field> parse(byte[] data) throws IOException {
+        List<Field> fields = new ArrayList<>();
+        int[] pos = {0};
+
+        while (pos[0] < data.length) {
+            int start = pos[0];
+            long tag = readVarint(data, pos);
+            int number = (int) (tag >>> 3);
+            int wireType = (int) (tag & 7);
+
+            long varint = 0;
+            byte[] bytes = null;
+            switch (wireType) {
+                case 0:
+                    varint = readVarint(data, pos);
+                    break;
+                case 1:
+                    pos[0] += 8;
+                    break;
+                case 2:
+                    int length = (int) readVarint(data, pos);
+                    if (length < 0 || pos[0] + length > data.length) throw new IOException("Truncated field " + number);
+                    bytes = Arrays.copyOfRange(data, pos[0], pos[0] + length);
+                    pos[0] += length;
+                    break;
+                case 5:
+                    pos[0] += 4;
+                    break;
+                default:
+                    throw new IOException("Unsupported wire type " + wireType + " at offset " + start);
+            }
+            if (pos[0] > data.length) throw new IOException("Truncated message");
+
+            fields.add(new Field(number, wireType, varint, bytes, Arrays.copyOfRange(data, start, pos[0])));
+        }
+        return fields;
+    }
+
+    static Field first(List<Field> fields, int number) {
+        for (Field field : fields) {
+            if (field.number == number) return field;
+        }
+        return null;
+    }
+
+    private static long readVarint(byte[] data, int[] pos) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (pos[0] >= data.length) throw new IOException("Truncated varint");
+            byte b = data[pos[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Malformed varint");
+    }
+}
@@ -0,0 +1,59 @@
+package com.animedetector.perf;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * ✅ كاتب protobuf أدنى (varint وحقول بطول) يكفي لبناء ملف ONNX بدون اعتماديات
+ */
+final class ProtoWriter {
+    private static final int VARINT = 0;
+    private static final int LENGTH_DELIMITED = 2;
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    ProtoWriter varint(int field, long value) {
+        tag(field, VARINT);
+        rawVarint(value);
+        return this;
+    }
+
+    ProtoWriter string(int field, String value) {
+        return bytes(field, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    ProtoWriter bytes(int field, byte[] value) {
+        tag(field, LENGTH_DELIMITED);
+        rawVarint(value.length);
+        out.write(value, 0, value.length);
+        return this;
+    }
+
+    ProtoWriter message(int field, ProtoWriter message) {
+        return bytes(field, message.toByteArray());
+    }
+
+    /**
+     * حقل مرمّز مسبقاً (وسم + قيمة) كما قرأه ProtoReader
+     */
+    ProtoWriter raw(byte[] encodedField) {
+        out.write(encodedField, 0, encodedField.length);
+        return this;
+    }
+
+    byte[] toByteArray() {
+        return out.toByteArray();
+    }
+
+    private void tag(int field, int wireType) {
+        rawVarint(((long) field << 3) | wireType);
+    }
+
+    private void rawVarint(long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+}
@@ -0,0 +1,154 @@
+package com.animedetector.perf;
+
+import java.util.Arrays;
+
+/**
+ * ✅ زمن وتخصيصات كل مرحلة في كل إطار؛ التخصيصات من عداد الخيط الحالي في ThreadMXBean
+ * (تخصيصات خيوط ORT الأصلية وعمّال النواة غير محسوبة، وهي خارج كومة Java على أي حال)
+ */
+final class StageRecorder {
+    private final JvmAllocationCounters counters;
+    private final boolean allocationSupported;
+
+    private final int stageCount;
+    private final long[][] nanos;
+    private final long[][] allocated;
+    private final long[] startNanos;
+    private final long[] startBytes;
+    private final long[] gcCount;
+    private final long[] gcMillis;
+    private long frameGcCount;
+    private long frameGcMillis;
+    private int frames;
+    private boolean recording;
+
+    StageRecorder(int stageCount, int capacity) {
+        this.stageCount = stageCount;
+        this.nanos = new long[stageCount][capacity];
+        this.allocated = new long[stageCount][capacity];
+        this.startNanos = new long[stageCount];
+        this.startBytes = new long[stageCount];
+        this.gcCount = new long[capacity];
+        this.gcMillis = new long[capacity];
+        this.counters = new JvmAllocationCounters();
+        this.allocationSupported = counters.isSupported();
+    }
+
+    /**
+     * الإطارات قبل التسجيل (الإحماء) تُقاس لكن لا تُحفظ
+     */
+    void setRecording(boolean recording) {
+        this.recording = recording;
+    }
+
+    /**
+     * بداية إطار: لقطة عدادات GC حتى يُنسب كل جمع للإطار الذي حدث فيه
+     */
+    void beginFrame() {
+        frameGcCount = counters.gcCount();
+        frameGcMillis = counters.gcTimeMillis();
+    }
+
+    void begin(int stage) {
+        startBytes[stage] = allocatedBytes();
+        startNanos[stage] = System.nanoTime();
+    }
+
+    void end(int stage) {
+        long elapsed = System.nanoTime() - startNanos[stage];
+        long bytes = allocatedBytes() - startBytes[stage];
+        if (!recording || frames >= nanos[stage].length) return;
+        nanos[stage][frames] = elapsed;
+        allocated[stage][frames] = bytes;
+    }
+
+    void endFrame() {
+        if (!recording || frames >= nanos[0].length) return;
+        gcCount[frames] = counters.gcCount() - frameGcCount;
+        gcMillis[frames] = counters.gcTimeMillis() - frameGcMillis;
+        frames++;
+    }
+
+    int getFrames() {
+        return frames;
+    }
+
+    boolean isAllocationSupported() {
+        return allocationSupported;
+    }
+
+    double percentileMillis(int stage, double percentile) {
+        return percentile(Arrays.copyOf(nanos[stage], frames), percentile) / 1e6;
+    }
+
+    double frameMillis(double percentile) {
+        long[] totals = new long[frames];
+        for (int f = 0; f < frames; f++) {
+            for (int s = 0; s < stageCount; s++) totals[f] += nanos[s][f];
+        }
+        return percentile(totals, percentile) / 1e6;
+    }
+
+    double totalSeconds() {
+        long total = 0;
+        for (int s = 0; s < stageCount; s++) {
+            for (int f = 0; f < frames; f++) total += nanos[s][f];
+        }
+        return total / 1e9;
+    }
+
+    double allocatedPerFrame(int stage) {
+        if (frames == 0) return 0;
+        long total = 0;
+        for (int f = 0; f < frames; f++) total += allocated[stage][f];
+        return (double) total / frames;
+    }
+
+    /**
+     * عدد الإطارات التي لم تخصّص فيها المرحلة أي بايت
+     */
+    int allocationFreeFrames(int stage) {
+        int count = 0;
+        for (int f = 0; f < frames; f++) {
+            if (allocated[stage][f] == 0) count++;
+        }
+        return count;
+    }
+
+    long gcCollections() {
+        long total = 0;
+        for (int f = 0; f < frames; f++) total += gcCount[f];
+        return total;
+    }
+
+    long gcMillis() {
+        long total = 0;
+        for (int f = 0; f < frames; f++) total += gcMillis[f];
+        return total;
+    }
+
+    /**
+     * عدد الإطارات التي حدث خلالها جمع واحد على الأقل
+     */
+    int gcFrames() {
+        int count = 0;
+        for (int f = 0; f < frames; f++) {
+            if (gcCount[f] > 0) count++;
+        }
+        return count;
+    }
+
+    private long allocatedBytes() {
+        return allocationSupported ? counters.threadAllocatedBytes() : 0L;
+    }
+
+    /**
+     * أقرب رتبة (nearest-rank) حتى تكون p99 قيمة مقاسة فعلاً لا استيفاءً
+     */
+    private static double percentile(long[] values, double percentile) {
+        if (values.length == 0) return 0;
+        Arrays.sort(values);
+        int rank = (int) Math.ceil(percentile / 100.0 * values.length);
+        return values[Math.max(0, Math.min(values.length - 1, rank - 1))];
+    }
+}
@@ -0,0 +1,88 @@
+package com.animedetector.perf;
+
+/**
+ * ✅ نموذج YOLO بديل صغير يُولَّد عند التشغيل: نفس شكل الإدخال والإخراج للنموذج الحقيقي
+ * ([1,3,640,640] → [1,5,6400]) حتى تعمل بوابة الأداء دون تحميل أي نموذج.
+ *
+ * الرسم: Conv 8×8 بخطوة 8 ← Sigmoid ← Mul(مقياس) ← Add(شبكة المراكز) ← Reshape.
+ * قناة الثقة تستجيب للبقع ذات لون البشرة (R أعلى من B) فيعطي عدد الكشوفات حملاً واقعياً على NMS والتنعيم.
+ */
+final class StandInModel {
+    static final int INPUT_SIZE = 640;
+
+    private static final int PATCH = 8;
+    private static final int GRID = INPUT_SIZE / PATCH;
+    private static final int CHANNELS = 5;
+    private static final int OPSET = 13;
+    private static final int IR_VERSION = 8;
+
+    private static final float SKIN_GAIN = 20f;
+    private static final float SKIN_BIAS = -3f;
+    private static final float MIN_BOX = 32f;
+    private static final float BOX_RANGE = 96f;
+
+    private StandInModel() {
+    }
+
+    static byte[] build() {
+        ProtoWriter graph = new ProtoWriter()
+            .message(1, OnnxProtos.node("Conv", new String[] {"images", "conv_w", "conv_b"}, "conv",
+                OnnxProtos.ints("kernel_shape", PATCH, PATCH), OnnxProtos.ints("strides", PATCH, PATCH)))
+            .message(1, OnnxProtos.node("Sigmoid", new String[] {"conv"}, "act"))
+            .message(1, OnnxProtos.node("Mul", new String[] {"act", "scale"}, "scaled"))
+            .message(1, OnnxProtos.node("Add", new String[] {"scaled", "grid"}, "boxes"))
+            .message(1, OnnxProtos.node("Reshape", new String[] {"boxes", "out_shape"}, "output0"))
+            .string(2, "stand_in_yolo")
+            .message(5, OnnxProtos.floatTensor("conv_w", convWeights(), CHANNELS, 3, PATCH, PATCH))
+            .message(5, OnnxProtos.floatTensor("conv_b", convBias(), CHANNELS))
+            .message(5, OnnxProtos.floatTensor("scale", scale(), 1, CHANNELS, 1, 1))
+            .message(5, OnnxProtos.floatTensor("grid", gridOffsets(), 1, CHANNELS, GRID, GRID))
+            .message(5, OnnxProtos.int64Tensor("out_shape", 1, CHANNELS, GRID * GRID))
+            .message(11, OnnxProtos.valueInfo("images", OnnxProtos.TYPE_FLOAT, 1, 3, INPUT_SIZE, INPUT_SIZE))
+            .message(12, OnnxProtos.valueInfo("output0", OnnxProtos.TYPE_FLOAT, 1, CHANNELS, GRID * GRID));
+
+        return new ProtoWriter()
+            .varint(1, IR_VERSION)
+            .string(2, "animedetector-perf")
+            .message(7, graph)
+            .message(8, new ProtoWriter().string(1, "").varint(2, OPSET))
+            .toByteArray();
+    }
+
+    /**
+     * القنوات 0-3 ثابتة (انحياز فقط)؛ قناة الثقة = متوسط (R - B) على الرقعة
+     */
+    private static float[] convWeights() {
+        int patchArea = PATCH * PATCH;
+        float[] w = new float[CHANNELS * 3 * patchArea];
+        int conf = 4 * 3 * patchArea;
+        for (int i = 0; i < patchArea; i++) {
+            w[conf + i] = SKIN_GAIN / patchArea;
+            w[conf + 2 * patchArea + i] = -SKIN_GAIN / patchArea;
+        }
+        return w;
+    }
+
+    private static float[] convBias() {
+        return new float[] {0f, 0f, 0f, 0f, SKIN_BIAS};
+    }
+
+    private static float[] scale() {
+        return new float[] {PATCH, PATCH, BOX_RANGE, BOX_RANGE, 1f};
+    }
+
+    private static float[] gridOffsets() {
+        int plane = GRID * GRID;
+        float[] grid = new float[CHANNELS * plane];
+        for (int y = 0; y < GRID; y++) {
+            for (int x = 0; x < GRID; x++) {
+                int i = y * GRID + x;
+                grid[i] = x * PATCH;
+                grid[plane + i] = y * PATCH;
+                grid[2 * plane + i] = MIN_BOX;
+                grid[3 * plane + i] = MIN_BOX;
+            }
+        }
+        return grid;
+    }
+}
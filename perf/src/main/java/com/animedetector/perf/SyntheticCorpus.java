@@ -0,0 +1,182 @@
+package com.animedetector.perf;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * ✅ مجموعة إطارات اصطناعية حتمية موصوفة في ملف CSV مُضمَّن في المستودع.
+ * كل سطر مشهد: الاسم، عدد الإطارات، الأبعاد، البذرة، عدد الوجوه، التمرير لكل إطار، تغيير المشهد كل N إطار.
+ * نفس البذرة تعطي نفس البكسلات على أي جهاز، فالفرق بين تقريرين هو فرق في الكود لا في المدخلات.
+ */
+final class SyntheticCorpus {
+    static final class Scene {
+        final String name;
+        final int frames;
+        final int width;
+        final int height;
+        final long seed;
+        final int faces;
+        final int scrollPx;
+        final int cutEvery;
+
+        Scene(String name, int frames, int width, int height, long seed,
+              int faces, int scrollPx, int cutEvery) {
+            this.name = name;
+            this.frames = frames;
+            this.width = width;
+            this.height = height;
+            this.seed = seed;
+            this.faces = faces;
+            this.scrollPx = scrollPx;
+            this.cutEvery = cutEvery;
+        }
+    }
+
+    private static final int PAGE_SCREENS = 4;
+    private static final Color SKIN = new Color(255, 214, 180);
+    private static final Color EYES = new Color(40, 60, 140);
+
+    private final List<Scene> scenes;
+
+    private SyntheticCorpus(List<Scene> scenes) {
+        this.scenes = scenes;
+    }
+
+    static SyntheticCorpus load(Path csv) throws IOException {
+        List<Scene> scenes = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(csv, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNo = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNo++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+
+                String[] f = line.split("\\s*,\\s*");
+                if (f.length != 8) {
+                    throw new IOException(csv + ":" + lineNo + ": expected 8 columns, got " + f.length);
+                }
+                scenes.add(new Scene(
+                    f[0], Integer.parseInt(f[1]), Integer.parseInt(f[2]), Integer.parseInt(f[3]),
+                    Long.parseLong(f[4]), Integer.parseInt(f[5]), Integer.parseInt(f[6]),
+                    Integer.parseInt(f[7])
+                ));
+            }
+        }
+        if (scenes.isEmpty()) throw new IOException(csv + ": no scenes");
+        return new SyntheticCorpus(scenes);
+    }
+
+    List<Scene> getScenes() {
+        return scenes;
+    }
+
+    int totalFrames() {
+        int total = 0;
+        for (Scene scene : scenes) total += scene.frames;
+        return total;
+    }
+
+    /**
+     * يرسم المشهد كصفحة أطول من الشاشة ثم يعيد نافذة الشاشة للإطار المطلوب
+     */
+    static final class Renderer {
+        private final Scene scene;
+        private final BufferedImage frame;
+        private final Graphics2D g;
+        private BufferedImage page;
+        private int layout = -1;
+
+        Renderer(Scene scene) {
+            this.scene = scene;
+            this.frame = new BufferedImage(scene.width, scene.height, BufferedImage.TYPE_INT_RGB);
+            this.g = frame.createGraphics();
+        }
+
+        BufferedImage render(int index) {
+            int wanted = scene.cutEvery > 0 ? index / scene.cutEvery : 0;
+            if (wanted != layout) {
+                page = drawPage(scene, scene.seed * 31 + wanted);
+                layout = wanted;
+            }
+
+            int scrollRange = page.getHeight() - scene.height;
+            int offset = scrollRange <= 0 ? 0 : (index * scene.scrollPx) % scrollRange;
+            g.drawImage(page, 0, -offset, null);
+            return frame;
+        }
+
+        int[] pixels() {
+            return ((DataBufferInt) frame.getRaster().getDataBuffer()).getData();
+        }
+
+        void dispose() {
+            g.dispose();
+        }
+    }
+
+    private static BufferedImage drawPage(Scene scene, long seed) {
+        Random random = new Random(seed);
+        int w = scene.width;
+        int h = scene.scrollPx > 0 ? scene.height * PAGE_SCREENS : scene.height;
+
+        BufferedImage page = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = page.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+        // خلفية باردة (B ≥ R) حتى لا تستجيب قناة البشرة إلا للوجوه
+        for (int y = 0; y < h; y += 4) {
+            int shade = 40 + (int) (120.0 * y / h);
+            g.setColor(new Color(shade / 2, shade / 2 + 20, shade + 40));
+            g.fillRect(0, y, w, 4);
+        }
+
+        int panels = 6 + random.nextInt(10) * h / scene.height;
+        for (int i = 0; i < panels; i++) {
+            int grey = 60 + random.nextInt(150);
+            g.setColor(new Color(grey, grey, Math.min(255, grey + random.nextInt(40))));
+            g.fillRect(random.nextInt(w), random.nextInt(h), 40 + random.nextInt(w / 2), 10 + random.nextInt(h / 12));
+        }
+
+        int faces = scene.faces * h / scene.height;
+        for (int i = 0; i < faces; i++) {
+            int size = 60 + random.nextInt(160);
+            int x = random.nextInt(Math.max(1, w - size));
+            int y = random.nextInt(Math.max(1, h - size));
+            drawFace(g, x, y, size);
+        }
+
+        g.dispose();
+        return page;
+    }
+
+    private static void drawFace(Graphics2D g, int x, int y, int size) {
+        g.setColor(new Color(30, 25, 50));
+        g.fillOval(x - size / 10, y - size / 8, size + size / 5, size);
+
+        g.setColor(SKIN);
+        g.fillOval(x, y, size, size * 11 / 10);
+
+        int eyeW = size / 5;
+        int eyeH = size / 4;
+        g.setColor(EYES);
+        g.fillOval(x + size / 4 - eyeW / 2, y + size / 2 - eyeH / 2, eyeW, eyeH);
+        g.fillOval(x + size * 3 / 4 - eyeW / 2, y + size / 2 - eyeH / 2, eyeW, eyeH);
+
+        g.setColor(new Color(200, 90, 90));
+        g.setStroke(new BasicStroke(Math.max(1, size / 40f)));
+        g.drawArc(x + size * 2 / 5, y + size * 3 / 4, size / 5, size / 10, 180, 180);
+    }
+}
@@ -0,0 +1,253 @@
+package com.animedetector.perf;
+
+import com.animedetector.ArrayKernels;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * ✅ ArrayKernels بـ jdk.incubator.vector لسطح المكتب: نفس العمليات العائمة بنفس الترتيب لكل مسار
+ * (ضرب ثم جمع منفصلان، بدون FMA) حتى تطابق ScalarKernels بتاً ببت. البواقي بعد آخر متجه كامل عددية.
+ * يُحمَّل انعكاسياً من Kernels.get() فقط عند تشغيل JVM بـ --add-modules jdk.incubator.vector.
+ */
+public final class VectorKernels implements ArrayKernels {
+    private static final VectorSpecies<Float> F = FloatVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> I = IntVector.SPECIES_PREFERRED;
+    private static final int LANES = F.length();
+    private static final float INV_255 = 1.0f / 255.0f;
+    private static final int WARMUP_CALLS = 20_000;
+
+    public VectorKernels() {
+        if (I.length() != LANES) {
+            throw new IllegalStateException("int/float species lane counts differ");
+        }
+        warmUp();
+    }
+
+    /**
+     * ✅ Vector API بلا تخصيص فقط بعد ترجمة C2: في المفسّر و C1 كل متجه وقناع كائن في الكومة.
+     * NMS تُستدعى مرات قليلة لكل إطار فلا تصل C2 وحدها، فنسخّن كل النوى هنا مرة واحدة ببيانات
+     * عشوائية (صناديق متداخلة ومتباعدة) حتى يرى C2 كلا فرعي كل شرط ولا يُلغي الترجمة مع أول إطار حقيقي
+     */
+    private void warmUp() {
+        Random random = new Random(7L);
+        int length = 8 * LANES + 3;
+        int[] pixels = new int[length];
+        float[] x1 = new float[length], y1 = new float[length], x2 = new float[length], y2 = new float[length];
+        float[] area = new float[length];
+        float[] scores = new float[length], best = new float[length];
+        float[] rowR = new float[length], rowG = new float[length], rowB = new float[length];
+        int[] classes = new int[length], bestClass = new int[length];
+        int[] out = new int[length];
+        boolean[] suppressed = new boolean[length];
+        float[] mean = {0.485f, 0.456f, 0.406f};
+        float[] std = {0.229f, 0.224f, 0.225f};
+        float[] lut = new float[256];
+        for (int i = 0; i < length; i++) {
+            pixels[i] = random.nextInt();
+            x1[i] = random.nextInt(96);
+            y1[i] = random.nextInt(96);
+            x2[i] = x1[i] + 8 + random.nextInt(24);
+            y2[i] = y1[i] + 8 + random.nextInt(24);
+            area[i] = (x2[i] - x1[i]) * (y2[i] - y1[i]);
+            classes[i] = random.nextInt(3);
+        }
+
+        for (int call = 0; call < WARMUP_CALLS; call++) {
+            convertRow(pixels, 0, length, mean, std, lut, lut, lut, rowR, rowG, rowB, 0);
+
+            for (int i = 0; i < length; i++) scores[i] = random.nextFloat();
+            if ((call & 7) == 0) Arrays.fill(best, 0f);
+            argmaxUpdate(scores, 0, length, best, bestClass, call & 3);
+            selectAbove(scores, length, 0.9f, out);
+
+            Arrays.fill(suppressed, false);
+            int first = random.nextInt(length);
+            suppressOverlaps(x1, y1, x2, y2, area, classes, suppressed, first, length, 0.45f, (call & 1) == 0);
+            selectWithin(x1, y1, classes, 0, length, x1[first], y1[first], classes[first], 400f, out, 1 + (call & 7));
+        }
+    }
+
+    @Override
+    public String name() {
+        return "vector-" + LANES * Float.SIZE + "bit";
+    }
+
+    @Override
+    public void convertRow(int[] pixels, int offset, int length,
+                           float[] mean, float[] std, float[] lutR, float[] lutG, float[] lutB,
+                           float[] rowR, float[] rowG, float[] rowB, int rowOffset) {
+        int bound = F.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += LANES) {
+            IntVector p = IntVector.fromArray(I, pixels, offset + i);
+            channel(p, 16, mean[0], std[0]).intoArray(rowR, rowOffset + i);
+            channel(p, 8, mean[1], std[1]).intoArray(rowG, rowOffset + i);
+            channel(p, 0, mean[2], std[2]).intoArray(rowB, rowOffset + i);
+        }
+        for (; i < length; i++) {
+            int pixel = pixels[offset + i];
+            rowR[rowOffset + i] = lutR[(pixel >> 16) & 0xFF];
+            rowG[rowOffset + i] = lutG[(pixel >> 8) & 0xFF];
+            rowB[rowOffset + i] = lutB[pixel & 0xFF];
+        }
+    }
+
+    /**
+     * نفس حساب جدول PreprocessKernel: (float) c * inv255 ثم - mean ثم / std
+     */
+    private static FloatVector channel(IntVector pixels, int shift, float mean, float std) {
+        IntVector c = shift == 0 ? pixels.and(0xFF) : pixels.lanewise(VectorOperators.ASHR, shift).and(0xFF);
+        return ((FloatVector) c.convert(VectorOperators.I2F, 0))
+            .mul(INV_255)
+            .sub(mean)
+            .div(std);
+    }
+
+    @Override
+    public void argmaxUpdate(float[] src, int srcOffset, int length, float[] best, int[] bestClass, int classId) {
+        int bound = F.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += LANES) {
+            FloatVector v = FloatVector.fromArray(F, src, srcOffset + i);
+            FloatVector b = FloatVector.fromArray(F, best, i);
+            VectorMask<Float> greater = v.compare(VectorOperators.GT, b);
+            if (!greater.anyTrue()) continue;
+
+            b.blend(v, greater).intoArray(best, i);
+            IntVector.fromArray(I, bestClass, i)
+                .blend(classId, greater.cast(I))
+                .intoArray(bestClass, i);
+        }
+        for (; i < length; i++) {
+            float v = src[srcOffset + i];
+            if (v > best[i]) {
+                best[i] = v;
+                bestClass[i] = classId;
+            }
+        }
+    }
+
+    @Override
+    public int selectAbove(float[] values, int length, float threshold, int[] out) {
+        int bound = F.loopBound(length);
+        int count = 0;
+        int i = 0;
+        for (; i < bound; i += LANES) {
+            if (!FloatVector.fromArray(F, values, i).compare(VectorOperators.GT, threshold).anyTrue()) continue;
+
+            // الكتلة فيها مرشح: المسح العددي لها وحدها بدل toLong() الذي يُبقي القناع كائناً في الكومة
+            for (int k = i, end = i + LANES; k < end; k++) {
+                if (values[k] > threshold) out[count++] = k;
+            }
+        }
+        for (; i < length; i++) {
+            if (values[i] > threshold) out[count++] = i;
+        }
+        return count;
+    }
+
+    @Override
+    public void suppressOverlaps(float[] x1, float[] y1, float[] x2, float[] y2, float[] area, int[] classId,
+                                 boolean[] suppressed, int i, int n, float iouThreshold, boolean perClass) {
+        float ax1 = x1[i], ay1 = y1[i], ax2 = x2[i], ay2 = y2[i];
+        float areaA = area[i];
+
+        int j = i + 1;
+        int bound = j + F.loopBound(n - j);
+        for (; j < bound; j += LANES) {
+            FloatVector bx1 = FloatVector.fromArray(F, x1, j);
+            FloatVector by1 = FloatVector.fromArray(F, y1, j);
+            FloatVector bx2 = FloatVector.fromArray(F, x2, j);
+            FloatVector by2 = FloatVector.fromArray(F, y2, j);
+
+            // تداخل المحاور كما في الفحص العددي: !(ax2 < bx1 || bx2 < ax1 || ay2 < by1 || by2 < ay1)
+            VectorMask<Float> disjoint = bx1.compare(VectorOperators.GT, ax2)
+                .or(bx2.compare(VectorOperators.LT, ax1))
+                .or(by1.compare(VectorOperators.GT, ay2))
+                .or(by2.compare(VectorOperators.LT, ay1));
+            if (disjoint.allTrue()) continue;
+
+            FloatVector interW = bx2.min(ax2).sub(bx1.max(ax1));
+            FloatVector interH = by2.min(ay2).sub(by1.max(ay1));
+            FloatVector inter = interW.mul(interH);
+            FloatVector union = FloatVector.broadcast(F, areaA).add(FloatVector.fromArray(F, area, j)).sub(inter);
+            FloatVector iou = inter.div(union);
+
+            // مرشح هندسي فقط؛ المكبوت مسبقاً والفئة يُفحصان عددياً لهذه الكتلة
+            if (!disjoint.not()
+                .and(inter.compare(VectorOperators.GT, 0f))
+                .and(iou.compare(VectorOperators.GT, iouThreshold))
+                .anyTrue()) continue;
+
+            suppressScalar(x1, y1, x2, y2, area, classId, suppressed, i, j, j + LANES, iouThreshold, perClass);
+        }
+
+        suppressScalar(x1, y1, x2, y2, area, classId, suppressed, i, j, n, iouThreshold, perClass);
+    }
+
+    private static void suppressScalar(float[] x1, float[] y1, float[] x2, float[] y2, float[] area, int[] classId,
+                                       boolean[] suppressed, int i, int from, int to,
+                                       float iouThreshold, boolean perClass) {
+        float ax1 = x1[i], ay1 = y1[i], ax2 = x2[i], ay2 = y2[i];
+        float areaA = area[i];
+        int cls = classId[i];
+
+        for (int j = from; j < to; j++) {
+            if (suppressed[j]) continue;
+            if (perClass && cls != classId[j]) continue;
+
+            if (ax2 < x1[j] || x2[j] < ax1 || ay2 < y1[j] || y2[j] < ay1) continue;
+
+            float interX1 = Math.max(ax1, x1[j]);
+            float interY1 = Math.max(ay1, y1[j]);
+            float interX2 = Math.min(ax2, x2[j]);
+            float interY2 = Math.min(ay2, y2[j]);
+
+            float interArea = (interX2 - interX1) * (interY2 - interY1);
+            if (interArea <= 0) continue;
+
+            float unionArea = areaA + area[j] - interArea;
+            float iou = interArea / unionArea;
+
+            if (iou > iouThreshold) suppressed[j] = true;
+        }
+    }
+
+    @Override
+    public int selectWithin(float[] cx, float[] cy, int[] classId, int from, int to,
+                            float tx, float ty, int targetClass, float thresholdSq, int[] out, int maxOut) {
+        int count = 0;
+        int k = from;
+        int bound = from + F.loopBound(to - from);
+        for (; k < bound && count < maxOut; k += LANES) {
+            FloatVector dx = FloatVector.fromArray(F, cx, k).sub(tx);
+            FloatVector dy = FloatVector.fromArray(F, cy, k).sub(ty);
+            if (!dx.mul(dx).add(dy.mul(dy)).compare(VectorOperators.LT, thresholdSq).anyTrue()) continue;
+
+            count = selectScalar(cx, cy, classId, k, k + LANES, tx, ty, targetClass, thresholdSq, out, count, maxOut);
+        }
+        return selectScalar(cx, cy, classId, k, to, tx, ty, targetClass, thresholdSq, out, count, maxOut);
+    }
+
+    private static int selectScalar(float[] cx, float[] cy, int[] classId, int from, int to,
+                                    float tx, float ty, int targetClass, float thresholdSq,
+                                    int[] out, int count, int maxOut) {
+        for (int k = from; k < to && count < maxOut; k++) {
+            if (classId[k] != targetClass) continue;
+
+            float dx = cx[k] - tx;
+            float dy = cy[k] - ty;
+            float distSq = dx * dx + dy * dy;
+
+            if (distSq < thresholdSq) out[count++] = k;
+        }
+        return count;
+    }
+}
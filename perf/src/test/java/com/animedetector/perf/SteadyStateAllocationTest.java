@@ -0,0 +1,93 @@
+package com.animedetector.perf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import com.animedetector.DetectionResult;
+import com.animedetector.PerformanceMonitor;
+
+import java.awt.image.BufferedImage;
+
+import org.junit.Test;
+
+/**
+ * ✅ مسارا الكشف والتنعيم لا يخصصان شيئاً بعد الإحماء، بعدادات PerformanceMonitor نفسها المستخدمة على الجهاز.
+ * الاستدلال يُقاس خارج STAGE_DETECT: session.run في ORT ينشئ غلاف Result ومصفوفات الأسماء في كل تشغيل
+ * حتى مع إدخال ومخرج مثبّتين، فله حد ثابت صغير بدل الصفر
+ */
+public class SteadyStateAllocationTest {
+    // تمرير وقطع ووجوه كثيرة حتى يتغير عدد الصناديق من إطار لآخر
+    private static final SyntheticCorpus.Scene SCENE =
+        new SyntheticCorpus.Scene("steady_state", 60, 540, 1200, 41, 9, 12, 20);
+    // أول طلب ترجمة C2 لأي دالة في صنف يحلّ ثوابت النصوص في ذلك الصنف على الخيط الطالب (تخصيص لمرة واحدة)،
+    // والتحويل الكامل كل 120 إطاراً يبلغ ذلك متأخراً: الإحماء يتجاوزه بهامش
+    private static final int WARMUP_LAPS = 35;
+    private static final int MEASURED_LAPS = 3;
+    private static final long INFERENCE_BUDGET_BYTES = 512;
+
+    private final JvmAllocationCounters counters = new JvmAllocationCounters();
+    private final PerformanceMonitor monitor = new PerformanceMonitor();
+    private long inferenceBytes;
+
+    @Test
+    public void detectAndSmoothDoNotAllocateAfterWarmUp() throws Exception {
+        assumeTrue("Thread allocation counters unsupported", counters.isSupported());
+
+        SyntheticCorpus.Renderer renderer = new SyntheticCorpus.Renderer(SCENE);
+        try (DesktopPipeline pipeline = new DesktopPipeline(StandInModel.build(), 1)) {
+            for (int i = 0; i < WARMUP_LAPS * SCENE.frames; i++) {
+                runFrame(pipeline, renderer.render(i % SCENE.frames));
+            }
+
+            monitor.setAllocationCounters(counters);
+            long maxInferenceBytes = 0;
+            int framesWithDetections = 0;
+
+            for (int i = 0; i < MEASURED_LAPS * SCENE.frames; i++) {
+                BufferedImage frame = renderer.render(i % SCENE.frames);
+
+                monitor.beginFrameAllocation();
+                DetectionResult result = runFrame(pipeline, frame);
+                monitor.endFrameAllocation();
+
+                // النافذة الدائرية تحفظ آخر 30 إطاراً فقط، فالفحص بعد كل إطار
+                assertEquals("detect stage allocated at frame " + i,
+                    0L, monitor.getMaxStageBytes(PerformanceMonitor.STAGE_DETECT));
+                assertEquals("smooth stage allocated at frame " + i,
+                    0L, monitor.getMaxStageBytes(PerformanceMonitor.STAGE_SMOOTH));
+
+                maxInferenceBytes = Math.max(maxInferenceBytes, inferenceBytes);
+                if (!result.detections.isEmpty()) framesWithDetections++;
+            }
+
+            assertTrue("Scene produced no detections", framesWithDetections > 0);
+            assertTrue("Inference allocated " + maxInferenceBytes + " B per frame",
+                maxInferenceBytes <= INFERENCE_BUDGET_BYTES);
+        } finally {
+            renderer.dispose();
+        }
+    }
+
+    /**
+     * ترتيب DesktopPipeline.process بدون الـ overlay، بحدود المراحل كما في OverlayService
+     */
+    private DetectionResult runFrame(DesktopPipeline pipeline, BufferedImage frame) throws Exception {
+        monitor.stageStart(PerformanceMonitor.STAGE_DETECT);
+        pipeline.preprocess(frame);
+        monitor.stageEnd(PerformanceMonitor.STAGE_DETECT);
+
+        long before = counters.threadAllocatedBytes();
+        pipeline.infer();
+        inferenceBytes = counters.threadAllocatedBytes() - before;
+
+        monitor.stageStart(PerformanceMonitor.STAGE_DETECT);
+        DetectionResult raw = pipeline.postprocess(frame.getWidth(), frame.getHeight());
+        monitor.stageEnd(PerformanceMonitor.STAGE_DETECT);
+
+        monitor.stageStart(PerformanceMonitor.STAGE_SMOOTH);
+        DetectionResult smoothed = pipeline.smooth(raw);
+        monitor.stageEnd(PerformanceMonitor.STAGE_SMOOTH);
+        return smoothed;
+    }
+}